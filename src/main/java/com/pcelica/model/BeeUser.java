@@ -3,58 +3,113 @@ package com.pcelica.model;
 import java.time.LocalDate;
 import java.util.Objects;
 
-public class BeeUser {
-    private String id;
-    private String firstName;
-    private String lastName;
-    private String gender;
-    private LocalDate birthDate;
-    private String birthPlace;
-    private String residenceCity;
-    private int colonies;
-    private String docNumber;
-    private int seqNumber;
-    private int year;
-    private LocalDate certificateDate; // New field for certificate date
-
-    public BeeUser() {}
-
-    // getters / setters
+/**
+ * One beekeeper entry. Immutable: a change is a new instance made with one of the with* methods,
+ * so the store and its snapshots can share records instead of copying them.
+ */
+public final class BeeUser {
+    private final String id;
+    private final String firstName;
+    private final String lastName;
+    private final String gender;
+    private final LocalDate birthDate;
+    private final String birthPlace;
+    private final String residenceCity;
+    private final int colonies;
+    private final String docNumber;
+    private final int seqNumber;
+    private final int year;
+    private final LocalDate certificateDate;
+
+    /** Entry with nothing filled in yet. */
+    public BeeUser() {
+        this(null, null, null, null, null, null, null, 0, null, 0, 0, null);
+    }
+
+    public BeeUser(String id, String firstName, String lastName, String gender, LocalDate birthDate,
+                   String birthPlace, String residenceCity, int colonies, String docNumber,
+                   int seqNumber, int year, LocalDate certificateDate) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.gender = gender;
+        this.birthDate = birthDate;
+        this.birthPlace = birthPlace;
+        this.residenceCity = residenceCity;
+        this.colonies = colonies;
+        this.docNumber = docNumber;
+        this.seqNumber = seqNumber;
+        this.year = year;
+        this.certificateDate = certificateDate;
+    }
+
+    // getters / withers
     public String getId() { return id; }
-    public void setId(String id) { this.id = id; }
+    public BeeUser withId(String id) {
+        return new BeeUser(id, firstName, lastName, gender, birthDate, birthPlace, residenceCity, colonies, docNumber, seqNumber, year, certificateDate);
+    }
 
     public String getFirstName() { return firstName; }
-    public void setFirstName(String firstName) { this.firstName = firstName; }
+    public BeeUser withFirstName(String firstName) {
+        return new BeeUser(id, firstName, lastName, gender, birthDate, birthPlace, residenceCity, colonies, docNumber, seqNumber, year, certificateDate);
+    }
 
     public String getLastName() { return lastName; }
-    public void setLastName(String lastName) { this.lastName = lastName; }
+    public BeeUser withLastName(String lastName) {
+        return new BeeUser(id, firstName, lastName, gender, birthDate, birthPlace, residenceCity, colonies, docNumber, seqNumber, year, certificateDate);
+    }
 
     public String getGender() { return gender; }
-    public void setGender(String gender) { this.gender = gender; }
+    public BeeUser withGender(String gender) {
+        return new BeeUser(id, firstName, lastName, gender, birthDate, birthPlace, residenceCity, colonies, docNumber, seqNumber, year, certificateDate);
+    }
 
     public LocalDate getBirthDate() { return birthDate; }
-    public void setBirthDate(LocalDate birthDate) { this.birthDate = birthDate; }
+    public BeeUser withBirthDate(LocalDate birthDate) {
+        return new BeeUser(id, firstName, lastName, gender, birthDate, birthPlace, residenceCity, colonies, docNumber, seqNumber, year, certificateDate);
+    }
 
     public String getBirthPlace() { return birthPlace; }
-    public void setBirthPlace(String birthPlace) { this.birthPlace = birthPlace; }
+    public BeeUser withBirthPlace(String birthPlace) {
+        return new BeeUser(id, firstName, lastName, gender, birthDate, birthPlace, residenceCity, colonies, docNumber, seqNumber, year, certificateDate);
+    }
 
     public String getResidenceCity() { return residenceCity; }
-    public void setResidenceCity(String residenceCity) { this.residenceCity = residenceCity; }
+    public BeeUser withResidenceCity(String residenceCity) {
+        return new BeeUser(id, firstName, lastName, gender, birthDate, birthPlace, residenceCity, colonies, docNumber, seqNumber, year, certificateDate);
+    }
 
     public int getColonies() { return colonies; }
-    public void setColonies(int colonies) { this.colonies = colonies; }
+    public BeeUser withColonies(int colonies) {
+        return new BeeUser(id, firstName, lastName, gender, birthDate, birthPlace, residenceCity, colonies, docNumber, seqNumber, year, certificateDate);
+    }
 
     public String getDocNumber() { return docNumber; }
-    public void setDocNumber(String docNumber) { this.docNumber = docNumber; }
+    public BeeUser withDocNumber(String docNumber) {
+        return new BeeUser(id, firstName, lastName, gender, birthDate, birthPlace, residenceCity, colonies, docNumber, seqNumber, year, certificateDate);
+    }
 
     public int getSeqNumber() { return seqNumber; }
-    public void setSeqNumber(int seqNumber) { this.seqNumber = seqNumber; }
+    public BeeUser withSeqNumber(int seqNumber) {
+        return new BeeUser(id, firstName, lastName, gender, birthDate, birthPlace, residenceCity, colonies, docNumber, seqNumber, year, certificateDate);
+    }
 
     public int getYear() { return year; }
-    public void setYear(int year) { this.year = year; }
+    public BeeUser withYear(int year) {
+        return new BeeUser(id, firstName, lastName, gender, birthDate, birthPlace, residenceCity, colonies, docNumber, seqNumber, year, certificateDate);
+    }
 
     public LocalDate getCertificateDate() { return certificateDate; }
-    public void setCertificateDate(LocalDate certificateDate) { this.certificateDate = certificateDate; }
+    public BeeUser withCertificateDate(LocalDate certificateDate) {
+        return new BeeUser(id, firstName, lastName, gender, birthDate, birthPlace, residenceCity, colonies, docNumber, seqNumber, year, certificateDate);
+    }
+
+    /**
+     * The record as entered in a given year: same person data, with that year's numbers.
+     */
+    public BeeUser withNumbers(int year, int seqNumber, String docNumber) {
+        return new BeeUser(id, firstName, lastName, gender, birthDate, birthPlace, residenceCity, colonies, docNumber, seqNumber, year, certificateDate);
+    }
 
     @Override
     public boolean equals(Object o) {
@@ -68,4 +123,4 @@ public class BeeUser {
     public int hashCode() {
         return Objects.hash(id);
     }
-}
\ No newline at end of file
+}
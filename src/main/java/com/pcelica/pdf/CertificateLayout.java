@@ -0,0 +1,224 @@
+package com.pcelica.pdf;
+
+import com.pcelica.model.BeeUser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
+import org.apache.pdfbox.util.Matrix;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Page layout of the certificate.
+ *
+ * The text that is the same on every certificate is positioned once per process: the header, and
+ * the purpose and signature block, which moves down with the length of the body. A page only lays
+ * out the member's fields, in one text block. For a document with many pages the fixed text is
+ * drawn once into two Form XObjects that every page places, so it is stored only once. All text is
+ * measured and broken through TextLayout.
+ */
+final class CertificateLayout {
+    private static final DateTimeFormatter OUT_DF = DateTimeFormatter.ofPattern("dd.MM.yyyy.");
+    private static final float PAGE_WIDTH = PDRectangle.A4.getWidth();
+    // Margine i razmaci
+    private static final float MARGIN_LEFT = 50;
+    private static final float MARGIN_TOP = 750;
+    private static final float LINE_HEIGHT = 14;
+    private static final float TEXT_SIZE = 11;
+    private static final float BODY_Y = MARGIN_TOP - 13 * LINE_HEIGHT;
+
+    /** Fixed text at its final position; footer lines are relative to the first purpose line. */
+    private record Line(boolean bold, float size, float x, float y, String text) {}
+
+    // positioned with the first document's fonts; the widths are the same in every document
+    private static List<Line> header;
+    private static List<Line> footer;
+
+    private final PDDocument document;
+    private final PDType0Font regularFont;
+    private final PDType0Font boldFont;
+    private final TextLayout body;
+    // null when the fixed text is drawn on the page itself
+    private final PDFormXObject headerForm;
+    private final PDFormXObject footerForm;
+
+    /**
+     * @param forms put the fixed text into forms shared by the pages; pays off from the second page on
+     */
+    CertificateLayout(PDDocument document, boolean forms) throws IOException {
+        this.document = document;
+        this.regularFont = FontCache.load(document, FontCache.REGULAR);
+        this.boldFont = FontCache.load(document, FontCache.BOLD);
+        this.body = new TextLayout(regularFont, TEXT_SIZE);
+        position(regularFont, boldFont);
+        this.headerForm = forms ? form(header, PDRectangle.A4) : null;
+        this.footerForm = forms ? form(footer, new PDRectangle(0, -9 * LINE_HEIGHT, PAGE_WIDTH, 10 * LINE_HEIGHT)) : null;
+    }
+
+    private static synchronized void position(PDType0Font regularFont, PDType0Font boldFont) throws IOException {
+        if (header != null) return;
+        List<Line> h = new ArrayList<>();
+        // Naziv udruženja, adresa, web i e-mail
+        h.add(centered(boldFont, true, 12, MARGIN_TOP, "UDRUŽENJE ZA RAZVOJ I PODRŠKU POLJOPRIVREDE \"PČELICA\""));
+        h.add(centered(regularFont, false, 10, MARGIN_TOP - LINE_HEIGHT, "75 270 Živinice Gornje, Glavni put bb, naseljeno mjesto Kopjevići"));
+        h.add(centered(regularFont, false, 10, MARGIN_TOP - 2 * LINE_HEIGHT, "www.pcelica-gzivinice.weebly.com   e-mail: pcelicagzivinice@gmail.com"));
+        // Kontakt
+        h.add(new Line(false, TEXT_SIZE, MARGIN_LEFT, MARGIN_TOP - 6 * LINE_HEIGHT, "Kontakt: 061 / 96 02 41"));
+        // Naslov POTVRDA
+        h.add(centered(boldFont, true, 18, MARGIN_TOP - 9 * LINE_HEIGHT, "P o t v r d u"));
+
+        List<Line> f = new ArrayList<>();
+        // Svrha (the third line holds the year)
+        f.add(new Line(false, TEXT_SIZE, MARGIN_LEFT, 0, "Potvrda se izdaje podnosiocu zahtjeva u svrhu ostvarivanja novčane podrške u"));
+        f.add(new Line(false, TEXT_SIZE, MARGIN_LEFT, -LINE_HEIGHT, "primarnoj poljoprivrednoj proizvodnji, te zdravstvenoj zaštiti pčela i unapređenje pčelinjeg"));
+        // Potpis
+        float signatureY = -6 * LINE_HEIGHT;
+        float signatureX = PAGE_WIDTH - MARGIN_LEFT - 150;
+        f.add(new Line(false, TEXT_SIZE, signatureX, signatureY, "Predsjednik Udruženja"));
+        f.add(new Line(false, TEXT_SIZE, signatureX, signatureY - LINE_HEIGHT, "________________________"));
+        // Pomaknuto malo ulijevo (-5 px)
+        String signatureName = "Šahim Halilbašić";
+        float nameWidth = new TextLayout(regularFont, TEXT_SIZE).width(signatureName);
+        f.add(new Line(false, TEXT_SIZE, signatureX + (150 - nameWidth) / 2 - 8, signatureY - 2 * LINE_HEIGHT, signatureName));
+
+        header = List.copyOf(h);
+        footer = List.copyOf(f);
+    }
+
+    private static Line centered(PDType0Font font, boolean bold, float size, float y, String text) throws IOException {
+        float width = new TextLayout(font, size).width(text);
+        return new Line(bold, size, (PAGE_WIDTH - width) / 2, y, text);
+    }
+
+    /**
+     * The lines as one text block in a form of this document. The form is written through a
+     * PDPageContentStream (hence the appearance-stream type), which registers its fonts with the
+     * document, so they are subset at save even if no page uses them directly.
+     */
+    private PDFormXObject form(List<Line> lines, PDRectangle bbox) throws IOException {
+        PDAppearanceStream form = new PDAppearanceStream(document);
+        form.setBBox(bbox);
+        form.setResources(new PDResources());
+        try (PDPageContentStream cs = new PDPageContentStream(document, form)) {
+            drawLines(cs, lines, 0);
+        }
+        return form;
+    }
+
+    /** The lines as one text block, moved up by dy. */
+    private void drawLines(PDPageContentStream cs, List<Line> lines, float dy) throws IOException {
+        cs.beginText();
+        PDType0Font font = null;
+        float size = 0;
+        float x = 0;
+        float y = -dy;
+        for (Line l : lines) {
+            PDType0Font f = l.bold() ? boldFont : regularFont;
+            if (f != font || l.size() != size) {
+                cs.setFont(f, l.size());
+                font = f;
+                size = l.size();
+            }
+            cs.newLineAtOffset(l.x() - x, l.y() - y);
+            x = l.x();
+            y = l.y();
+            cs.showText(l.text());
+        }
+        cs.endText();
+    }
+
+    /**
+     * Appends the certificate of u to the document as a new page. If drawing fails the page is
+     * removed again, so a print run can go on with the next member.
+     */
+    void addPage(BeeUser u) throws IOException {
+        PDPage page = new PDPage(PDRectangle.A4);
+        document.addPage(page);
+        try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+            if (headerForm != null) contentStream.drawForm(headerForm);
+            else drawLines(contentStream, header, 0);
+
+            List<TextLayout.Line> bodyLines = body.lines(bodyText(u), PAGE_WIDTH - 2 * MARGIN_LEFT);
+            int line1Height = bodyLines.size();
+            float purposeY = BODY_Y - (line1Height + 4) * LINE_HEIGHT;
+
+            // every field of the member in one text block, each line placed relative to the one before
+            contentStream.beginText();
+            contentStream.setFont(regularFont, TEXT_SIZE);
+            contentStream.newLineAtOffset(MARGIN_LEFT, 0);
+            float y = 0;
+            // Use certificate date instead of current date
+            LocalDate date = u.getCertificateDate() != null ? u.getCertificateDate() : LocalDate.now();
+            y = line(contentStream, y, MARGIN_TOP - 4 * LINE_HEIGHT, "Datum: " + date.format(OUT_DF) + " godine");
+            // Broj dokumenta
+            y = line(contentStream, y, MARGIN_TOP - 5 * LINE_HEIGHT, "Broj: " + (u.getDocNumber() != null ? u.getDocNumber() : ""));
+            // Tekst potvrde
+            for (int i = 0; i < bodyLines.size(); i++) {
+                contentStream.newLineAtOffset(0, BODY_Y - i * LINE_HEIGHT - y);
+                body.show(contentStream, bodyLines.get(i));
+                y = BODY_Y - i * LINE_HEIGHT;
+            }
+            y = line(contentStream, y, BODY_Y - line1Height * LINE_HEIGHT,
+                    "Udruženja za razvoj i podršku poljoprivrede \"PČELICA\" i broji (" + u.getColonies() + ") pčelinjih zajednica / kolonija.");
+            // Redni brojevi
+            y = line(contentStream, y, BODY_Y - (line1Height + 2) * LINE_HEIGHT,
+                    "Redni broj od 1 do " + u.getColonies() + " pčelinjih zajednica / kolonija.");
+            line(contentStream, y, purposeY - 2 * LINE_HEIGHT, "fonda, za " + u.getYear() + ". godinu.");
+            contentStream.endText();
+
+            if (footerForm != null) {
+                contentStream.saveGraphicsState();
+                contentStream.transform(Matrix.getTranslateInstance(0, purposeY));
+                contentStream.drawForm(footerForm);
+                contentStream.restoreGraphicsState();
+            } else {
+                drawLines(contentStream, footer, purposeY);
+            }
+        } catch (IOException | RuntimeException ex) {
+            document.removePage(page);
+            throw ex;
+        }
+    }
+
+    private static float line(PDPageContentStream contentStream, float fromY, float y, String text) throws IOException {
+        contentStream.newLineAtOffset(0, y - fromY);
+        contentStream.showText(text);
+        return y;
+    }
+
+    private static String bodyText(BeeUser u) {
+        String genderSuffix = "Žensko".equals(u.getGender()) ? "a" : "";
+
+        StringBuilder bodyBuilder = new StringBuilder("Da se, ");
+        bodyBuilder.append(safe(u.getLastName())).append(" ").append(safe(u.getFirstName()))
+                .append(", rođen").append(genderSuffix).append(" ");
+
+        if (u.getBirthDate() != null) {
+            bodyBuilder.append(u.getBirthDate().format(OUT_DF)).append(" godine");
+        }
+
+        if (u.getBirthPlace() != null && !u.getBirthPlace().trim().isEmpty()) {
+            bodyBuilder.append(" u ").append(safe(u.getBirthPlace()));
+        }
+
+        if (u.getResidenceCity() != null && !u.getResidenceCity().trim().isEmpty()) {
+            bodyBuilder.append(", sa prebivalištem u ").append(safe(u.getResidenceCity()));
+        }
+
+        bodyBuilder.append(", nalazi u evidenciji aktivnog članstva");
+        return bodyBuilder.toString();
+    }
+
+    private static String safe(String s) {
+        return s == null ? "" : s;
+    }
+}
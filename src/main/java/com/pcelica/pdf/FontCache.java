@@ -0,0 +1,59 @@
+package com.pcelica.pdf;
+
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The embedded fonts, parsed once per process. Each document only gets a PDType0Font wrapper
+ * around the shared TrueTypeFont, which subsets the glyphs it used when the document is saved.
+ *
+ * The font is shared by documents on several threads; these are the calls they make on it. The
+ * cmap, hmtx and glyf tables are parsed lazily, so they are read here before the font is handed out;
+ * after that getUnicodeCmapLookup() and the advance widths are only lookups in parsed tables. A
+ * glyph that GlyphTable.getGlyph() has not cached yet is read under a lock on the font's data
+ * stream. At save the subsetter reads glyph data through getOriginalData(), which returns a new
+ * ByteArrayInputStream over the font bytes on every call, so no two documents share a read
+ * position; the tables it copies whole come from getTableBytes(), which locks the font.
+ */
+final class FontCache {
+    static final String REGULAR = "/fonts/DejaVuSans.ttf";
+    static final String BOLD = "/fonts/DejaVuSans-Bold.ttf";
+
+    // kept open for the whole process; a document does not close a font it did not parse
+    private static final Map<String, TrueTypeFont> FONTS = new HashMap<>();
+
+    private FontCache() {}
+
+    /**
+     * A subset-embedded font for the document, backed by the shared parsed font.
+     */
+    static PDType0Font load(PDDocument doc, String fontPath) throws IOException {
+        return PDType0Font.load(doc, font(fontPath), true);
+    }
+
+    static synchronized TrueTypeFont font(String fontPath) throws IOException {
+        TrueTypeFont ttf = FONTS.get(fontPath);
+        if (ttf != null) return ttf;
+        InputStream fontStream = FontCache.class.getResourceAsStream(fontPath);
+        if (fontStream == null) {
+            throw new IOException("Nedostaje font: " + fontPath);
+        }
+        try (InputStream is = fontStream) {
+            ttf = new TTFParser().parse(new RandomAccessReadBuffer(is));
+        }
+        // tables are parsed lazily; read the ones every document uses while still single-threaded
+        ttf.getUnicodeCmapLookup();
+        ttf.getHorizontalMetrics();
+        ttf.getGlyph();
+        FONTS.put(fontPath, ttf);
+        return ttf;
+    }
+}
@@ -0,0 +1,296 @@
+package com.pcelica.pdf;
+
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measuring and line breaking of text in one font and size.
+ *
+ * Advances are cached per font and code point for the whole process (the fonts come from
+ * FontCache, so every document's copy of a font has the same widths). A text is broken greedily in
+ * one pass: every word is measured once and a line only adds up widths. Optionally a line can be
+ * justified and a word that does not fit can be hyphenated by Bosnian syllable rules. A word longer
+ * than a whole line is split between two letters, or at a syllable when hyphenating.
+ */
+final class TextLayout {
+    /** A laid out line; wordSpacing is the extra space per gap when it is justified. */
+    record Line(String text, float width, float wordSpacing) {}
+
+    private static final Map<String, Advances> ADVANCES = new ConcurrentHashMap<>();
+
+    private final PDType0Font font;
+    private final float fontSize;
+    private final Advances advances;
+    private boolean justify;
+    private boolean hyphenate;
+
+    TextLayout(PDType0Font font, float fontSize) {
+        this.font = font;
+        this.fontSize = fontSize;
+        this.advances = ADVANCES.computeIfAbsent(font.getName(), k -> new Advances());
+    }
+
+    /** Every line but the last is stretched to the full width. */
+    TextLayout justified() {
+        justify = true;
+        return this;
+    }
+
+    /** A word that does not fit at the end of a line is hyphenated if it can be. */
+    TextLayout hyphenated() {
+        hyphenate = true;
+        return this;
+    }
+
+    float width(String text) throws IOException {
+        return width(text, 0, text.length());
+    }
+
+    private float width(String text, int from, int to) throws IOException {
+        float w = 0;
+        for (int i = from; i < to; ) {
+            int cp = text.codePointAt(i);
+            w += advances.get(font, cp);
+            i += Character.charCount(cp);
+        }
+        return w / 1000 * fontSize;
+    }
+
+    /**
+     * Breaks the text into lines no wider than maxWidth. Every space inside a line is kept as it is in
+     * the text; spaces at a line break are dropped.
+     */
+    List<Line> lines(String text, float maxWidth) throws IOException {
+        List<Line> out = new ArrayList<>();
+        if (text == null || text.isEmpty()) return out;
+        float space = width(" ");
+        float hyphen = width("-");
+        StringBuilder line = new StringBuilder();
+        float lineWidth = 0;
+        int gaps = 0;
+        for (String word : text.split(" ")) {
+            int from = 0;
+            float wordWidth = width(word);
+            float[] cum = null; // prefix widths, only for a word that gets split
+            while (true) {
+                float gap = line.length() == 0 ? 0 : space;
+                if (lineWidth + gap + wordWidth <= maxWidth) {
+                    if (gap > 0) {
+                        line.append(' ');
+                        gaps++;
+                    }
+                    line.append(word, from, word.length());
+                    lineWidth += gap + wordWidth;
+                    break;
+                }
+                boolean alone = line.length() == 0;
+                if (hyphenate) {
+                    if (cum == null) cum = prefixWidths(word);
+                    int cut = hyphenCut(word, from, cum, maxWidth - lineWidth - gap, hyphen);
+                    if (cut > from) {
+                        if (gap > 0) {
+                            line.append(' ');
+                            gaps++;
+                        }
+                        line.append(word, from, cut);
+                        float w = cum[cut] - cum[from];
+                        if (word.charAt(cut - 1) != '-') {
+                            line.append('-');
+                            w += hyphen;
+                        }
+                        out.add(line(line, lineWidth + gap + w, gaps, maxWidth, false));
+                        line.setLength(0);
+                        lineWidth = 0;
+                        gaps = 0;
+                        from = cut;
+                        wordWidth = cum[word.length()] - cum[from];
+                        continue;
+                    }
+                }
+                if (!alone) {
+                    out.add(line(line, lineWidth, gaps, maxWidth, false));
+                    line.setLength(0);
+                    lineWidth = 0;
+                    gaps = 0;
+                    continue;
+                }
+                // longer than a line on its own: as many letters as fit, at least one
+                if (cum == null) cum = prefixWidths(word);
+                int cut = from + Character.charCount(word.codePointAt(from));
+                while (cut < word.length() && cum[cut + Character.charCount(word.codePointAt(cut))] - cum[from] <= maxWidth) {
+                    cut += Character.charCount(word.codePointAt(cut));
+                }
+                line.append(word, from, cut);
+                out.add(line(line, cum[cut] - cum[from], 0, maxWidth, false));
+                line.setLength(0);
+                from = cut;
+                wordWidth = cum[word.length()] - cum[from];
+                if (from == word.length()) break;
+            }
+        }
+        if (line.length() > 0) out.add(line(line, lineWidth, gaps, maxWidth, true));
+        return out;
+    }
+
+    private Line line(StringBuilder text, float width, int gaps, float maxWidth, boolean last) {
+        float spacing = justify && !last && gaps > 0 && width < maxWidth ? (maxWidth - width) / gaps : 0;
+        return new Line(text.toString(), width, spacing);
+    }
+
+    /** cum[i] is the width of word[0, i); entries inside a surrogate pair repeat the previous one. */
+    private float[] prefixWidths(String word) throws IOException {
+        float[] cum = new float[word.length() + 1];
+        for (int i = 0; i < word.length(); ) {
+            int cp = word.codePointAt(i);
+            int n = Character.charCount(cp);
+            float w = cum[i] + advances.get(font, cp) / 1000 * fontSize;
+            for (int k = 1; k <= n; k++) cum[i + k] = k == n ? w : cum[i];
+            i += n;
+        }
+        return cum;
+    }
+
+    /**
+     * The last hyphenation point after from at which word[from, point) plus a hyphen fits into
+     * room; from if there is none.
+     */
+    private int hyphenCut(String word, int from, float[] cum, float room, float hyphen) {
+        int best = from;
+        for (int p : hyphenPoints(word)) {
+            if (p <= from) continue;
+            float w = cum[p] - cum[from] + (word.charAt(p - 1) == '-' ? 0 : hyphen);
+            if (w > room) break;
+            best = p;
+        }
+        return best;
+    }
+
+    /**
+     * Shows the line at the current text position; a justified line widens its gaps through the
+     * positioning of a TJ array, since word spacing (Tw) does not apply to the two-byte codes of
+     * a Type0 font.
+     */
+    void show(PDPageContentStream contentStream, Line line) throws IOException {
+        if (line.wordSpacing() == 0) {
+            contentStream.showText(line.text());
+            return;
+        }
+        String[] words = line.text().split(" ");
+        Object[] parts = new Object[words.length * 2 - 1];
+        Float shift = -line.wordSpacing() * 1000 / fontSize;
+        for (int i = 0; i < words.length; i++) {
+            parts[2 * i] = i < words.length - 1 ? words[i] + " " : words[i];
+            if (i < words.length - 1) parts[2 * i + 1] = shift;
+        }
+        contentStream.showTextWithPositioning(parts);
+    }
+
+    /**
+     * Indices in the word before which it may be broken, ascending. An existing hyphen is a break
+     * point of its own; every part between hyphens is split into syllables if it is made of letters
+     * only (leading and trailing punctuation aside), leaving at least two letters on each side.
+     */
+    static List<Integer> hyphenPoints(String word) {
+        List<Integer> points = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= word.length(); i++) {
+            if (i < word.length() && word.charAt(i) != '-') continue;
+            syllables(word, start, i, points);
+            if (i < word.length() && i > 0 && i + 1 < word.length()) points.add(i + 1);
+            start = i + 1;
+        }
+        return points;
+    }
+
+    /**
+     * Syllable boundaries of word[from, to) by the usual Bosnian rules: a consonant between two
+     * vowels goes to the next syllable (pče-la), a group of consonants is split after its first one
+     * (sun-ce) unless the group can start a syllable (se-stra, pri-vre-da). lj, nj and dž are one
+     * letter, and r between consonants is a vowel (po-dr-ška).
+     */
+    private static void syllables(String word, int from, int to, List<Integer> out) {
+        while (from < to && !Character.isLetter(word.charAt(from))) from++;
+        while (to > from && !Character.isLetter(word.charAt(to - 1))) to--;
+        if (to - from < 4) return;
+        for (int i = from; i < to; i++) {
+            if (!Character.isLetter(word.charAt(i))) return;
+        }
+        String s = word.substring(from, to).toLowerCase(Locale.ROOT);
+        int[] unitStart = new int[s.length()];
+        String[] units = new String[s.length()];
+        int n = 0;
+        for (int i = 0; i < s.length(); ) {
+            int len = i + 1 < s.length() && isDigraph(s.charAt(i), s.charAt(i + 1)) ? 2 : 1;
+            unitStart[n] = i;
+            units[n++] = s.substring(i, i + len);
+            i += len;
+        }
+        boolean[] vowel = new boolean[n];
+        for (int u = 0; u < n; u++) vowel[u] = "aeiou".contains(units[u]);
+        for (int u = 0; u < n; u++) {
+            if (units[u].equals("r") && (u == 0 || !vowel[u - 1]) && (u == n - 1 || !vowel[u + 1])) vowel[u] = true;
+        }
+        int prev = -1;
+        for (int u = 0; u < n; u++) {
+            if (!vowel[u]) continue;
+            if (prev >= 0) {
+                int consonants = u - prev - 1;
+                int split;
+                if (consonants == 0) split = u;
+                else if (consonants == 1) split = prev + 1;
+                else split = isOnset(units[prev + 1], units[prev + 2]) ? prev + 1 : prev + 2;
+                int at = unitStart[split];
+                if (at >= 2 && s.length() - at >= 2) out.add(from + at);
+            }
+            prev = u;
+        }
+    }
+
+    private static boolean isDigraph(char a, char b) {
+        return (b == 'j' && (a == 'l' || a == 'n')) || (a == 'd' && b == 'ž');
+    }
+
+    private static final Set<String> SONANTS = Set.of("j", "l", "lj", "m", "n", "nj", "r");
+
+    /** Whether a syllable can start with these two consonants. */
+    private static boolean isOnset(String c1, String c2) {
+        if (c1.equals("s") || c1.equals("š") || c1.equals("z") || c1.equals("ž")) return true;
+        return !SONANTS.contains(c1) && (SONANTS.contains(c2) || c2.equals("v"));
+    }
+
+    /** Advances of one font in thousandths of the font size; Latin letters in an array, the rest in a map. */
+    private static final class Advances {
+        private final float[] latin = new float[0x250];
+        private final Map<Integer, Float> other = new ConcurrentHashMap<>();
+
+        Advances() {
+            Arrays.fill(latin, Float.NaN);
+        }
+
+        /** Throws like PDType0Font.getStringWidth if the font has no glyph for cp. */
+        float get(PDType0Font font, int cp) throws IOException {
+            if (cp < latin.length) {
+                float w = latin[cp];
+                if (Float.isNaN(w)) {
+                    w = measure(font, cp);
+                    latin[cp] = w;
+                }
+                return w;
+            }
+            Float w = other.get(cp);
+            if (w == null) {
+                w = measure(font, cp);
+                other.put(cp, w);
+            }
+            return w;
+        }
+
+        private static float measure(PDType0Font font, int cp) throws IOException {
+            return font.getStringWidth(new String(Character.toChars(cp)));
+        }
+    }
+}
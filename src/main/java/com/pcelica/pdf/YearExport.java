@@ -0,0 +1,159 @@
+package com.pcelica.pdf;
+
+import com.pcelica.model.BeeUser;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Writes the certificates of many members, e.g. a whole year, on a fixed pool of one thread per
+ * core. Every certificate is its own PDDocument on the thread that renders it; the fonts come
+ * from FontCache. A certificate that fails is recorded and the rest go on.
+ *
+ * A print run (merged()) instead puts every certificate on a page of one document, with the
+ * fonts embedded once and subset over all pages and the fixed text stored once
+ * (CertificateLayout). Its page streams go to a temp file, not the heap.
+ */
+public final class YearExport {
+    /** A certificate that could not be written, with the reason. */
+    public record Failure(BeeUser user, String message) {}
+
+    private final List<BeeUser> users;
+    // folder for a file per member, or the one file of a print run
+    private final Path target;
+    private final boolean merged;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final AtomicInteger written = new AtomicInteger();
+
+    public YearExport(List<BeeUser> users, Path dir) {
+        this(users, dir, false);
+    }
+
+    private YearExport(List<BeeUser> users, Path target, boolean merged) {
+        this.users = users;
+        this.target = target;
+        this.merged = merged;
+    }
+
+    /**
+     * All certificates as pages of the one PDF file.
+     */
+    public static YearExport merged(List<BeeUser> users, Path file) {
+        return new YearExport(users, file, true);
+    }
+
+    public List<BeeUser> users() { return users; }
+
+    public Path target() { return target; }
+
+    public boolean isMerged() { return merged; }
+
+    /**
+     * Writes the certificates and blocks until all are done or the export was cancelled.
+     * progress gets the number of finished certificates, from the worker threads.
+     * A print run is only saved if it was not cancelled.
+     */
+    public List<Failure> run(IntConsumer progress) throws InterruptedException, IOException {
+        if (merged) return runMerged(progress);
+        List<Path> targets = targets();
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), users.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "pdf-export");
+            t.setDaemon(true);
+            return t;
+        });
+        Queue<Failure> failures = new ConcurrentLinkedQueue<>();
+        AtomicInteger finished = new AtomicInteger();
+        try {
+            for (int i = 0; i < users.size(); i++) {
+                BeeUser u = users.get(i);
+                Path out = targets.get(i);
+                pool.execute(() -> {
+                    if (cancelled.get()) return;
+                    try {
+                        PdfExporter.write(u, out);
+                        written.incrementAndGet();
+                    } catch (IOException | RuntimeException ex) {
+                        ex.printStackTrace();
+                        failures.add(new Failure(u, ex.getMessage() != null ? ex.getMessage() : ex.toString()));
+                    }
+                    progress.accept(finished.incrementAndGet());
+                });
+            }
+        } finally {
+            pool.shutdown();
+        }
+        // a certificate being written is finished, so no half-written file is left behind
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException ex) {
+            cancel();
+            throw ex;
+        }
+        return new ArrayList<>(failures);
+    }
+
+    private List<Failure> runMerged(IntConsumer progress) throws InterruptedException, IOException {
+        List<Failure> failures = new ArrayList<>();
+        try (PDDocument document = new PDDocument(IOUtils.createTempFileOnlyStreamCache())) {
+            CertificateLayout layout = new CertificateLayout(document, true);
+            int done = 0;
+            for (BeeUser u : users) {
+                if (cancelled.get()) return failures;
+                if (Thread.interrupted()) {
+                    cancel();
+                    throw new InterruptedException();
+                }
+                try {
+                    layout.addPage(u);
+                } catch (IOException | RuntimeException ex) {
+                    ex.printStackTrace();
+                    failures.add(new Failure(u, ex.getMessage() != null ? ex.getMessage() : ex.toString()));
+                }
+                progress.accept(++done);
+            }
+            PdfExporter.save(document, target);
+            written.set(document.getNumberOfPages());
+        }
+        return failures;
+    }
+
+    /**
+     * Certificates not started yet are skipped; run() returns once the running ones are written.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /** Certificates written so far. */
+    public int written() {
+        return written.get();
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * File per member; names that would collide (e.g. differing only in spaces or case) get a number,
+     * so no two threads write the same file.
+     */
+    private List<Path> targets() {
+        List<Path> out = new ArrayList<>(users.size());
+        Set<String> taken = new HashSet<>();
+        for (BeeUser u : users) {
+            String name = PdfExporter.fileName(u);
+            String base = name.substring(0, name.length() - 4);
+            for (int n = 2; !taken.add(name.toLowerCase(Locale.ROOT)); n++) name = base + "_" + n + ".pdf";
+            out.add(target.resolve(name));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,215 @@
+package com.pcelica.store;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Append-only index of the backups (backup_catalog.jsonl in data/, one JSON object per line),
+ * so listing them needs neither a directory scan nor opening a single backup.
+ *
+ * A later line for a name replaces the earlier one and a "removed" line drops it; a torn last
+ * line (crash while appending) is ignored. The file is rewritten without the stale lines once
+ * they outnumber the live ones. If it is missing it is rebuilt from the directory, without row
+ * counts, since those would need every backup to be read.
+ */
+class BackupCatalog {
+    private static final String FILE_NAME = "backup_catalog.jsonl";
+
+    private static class Line {
+        String name;
+        String time;
+        String reason;
+        boolean delta;
+        long bytes;
+        String hash;
+        Map<String, Integer> rows;
+        boolean removed;
+    }
+
+    private final Path dir;
+    private final Path file;
+    private final Gson gson = new Gson();
+    // by name; loaded on first use
+    private Map<String, BackupInfo> entries;
+    private int lines;
+
+    BackupCatalog(Path dir) {
+        this.dir = dir;
+        this.file = dir.resolve(FILE_NAME);
+    }
+
+    synchronized void add(BackupInfo info) {
+        load();
+        entries.put(info.name(), info);
+        append(toLine(info));
+    }
+
+    synchronized void remove(String name) {
+        load();
+        if (entries.remove(name) == null) return;
+        Line l = new Line();
+        l.name = name;
+        l.removed = true;
+        append(l);
+    }
+
+    /**
+     * Records the new size of a backup that was rewritten or compressed.
+     */
+    synchronized void resized(String name, long bytes) {
+        load();
+        BackupInfo b = entries.get(name);
+        if (b == null || b.bytes() == bytes) return;
+        add(new BackupInfo(b.name(), b.time(), b.reason(), b.delta(), bytes, b.hash(), b.rowsByYear()));
+    }
+
+    synchronized BackupInfo get(String name) {
+        load();
+        return entries.get(name);
+    }
+
+    /**
+     * Every catalogued backup, newest first.
+     */
+    synchronized List<BackupInfo> list() {
+        load();
+        List<BackupInfo> out = new ArrayList<>(entries.values());
+        out.sort(Comparator.comparing(BackupInfo::time).thenComparing(BackupInfo::name).reversed());
+        return out;
+    }
+
+    private void load() {
+        if (entries != null) return;
+        entries = new HashMap<>();
+        lines = 0;
+        if (!Files.exists(file)) {
+            rebuild();
+            return;
+        }
+        try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String s;
+            while ((s = r.readLine()) != null) {
+                if (s.isBlank()) continue;
+                lines++;
+                Line l;
+                try {
+                    l = gson.fromJson(s, Line.class);
+                } catch (JsonParseException ex) {
+                    continue;
+                }
+                if (l == null || l.name == null) continue;
+                if (l.removed) {
+                    entries.remove(l.name);
+                } else {
+                    BackupInfo b = fromLine(l);
+                    if (b != null) entries.put(b.name(), b);
+                }
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        if (lines > 2 * entries.size() + 100) rewrite();
+    }
+
+    /**
+     * Catalog for backups written before it existed: name, time, reason and size from the directory,
+     * the hash from a delta's header line.
+     */
+    private void rebuild() {
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "backup_*.{csv,delta,csv.gz,delta.gz}")) {
+            for (Path p : ds) {
+                String name = BackupStore.logicalName(p);
+                LocalDateTime time = BackupStore.parseStamp(name);
+                if (time == null) continue;
+                boolean delta = BackupStore.isDelta(p);
+                String hash = null;
+                if (delta) {
+                    try {
+                        hash = BackupStore.readDeltaHeader(p)[2];
+                    } catch (IOException ex) {
+                        // listed without a hash
+                    }
+                }
+                entries.put(name, new BackupInfo(name, time, reasonOf(name), delta, Files.size(p), hash, null));
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        rewrite();
+    }
+
+    private void rewrite() {
+        Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+        try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (BackupInfo b : entries.values()) {
+                w.write(gson.toJson(toLine(b)));
+                w.write('\n');
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return;
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lines = entries.size();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void append(Line l) {
+        try {
+            Files.writeString(file, gson.toJson(l) + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            lines++;
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Reason part of backup_&lt;stamp&gt;_&lt;reason&gt;[-N].&lt;ext&gt;.
+     */
+    static String reasonOf(String name) {
+        int dot = name.indexOf('.', 23);
+        String core = name.substring(23, dot < 0 ? name.length() : dot);
+        return core.replaceFirst("-\\d+$", "");
+    }
+
+    private static Line toLine(BackupInfo b) {
+        Line l = new Line();
+        l.name = b.name();
+        l.time = b.time().toString();
+        l.reason = b.reason();
+        l.delta = b.delta();
+        l.bytes = b.bytes();
+        l.hash = b.hash();
+        if (b.rowsByYear() != null) {
+            l.rows = new TreeMap<>();
+            b.rowsByYear().forEach((y, n) -> l.rows.put(String.valueOf(y), n));
+        }
+        return l;
+    }
+
+    private static BackupInfo fromLine(Line l) {
+        try {
+            Map<Integer, Integer> rows = null;
+            if (l.rows != null) {
+                rows = new TreeMap<>();
+                for (Map.Entry<String, Integer> e : l.rows.entrySet()) rows.put(Integer.parseInt(e.getKey()), e.getValue());
+            }
+            return new BackupInfo(l.name, LocalDateTime.parse(l.time), l.reason, l.delta, l.bytes, l.hash,
+                    rows == null ? null : Collections.unmodifiableMap(rows));
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.pcelica.store;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Catalog entry of one backup: what it holds, known without opening the file.
+ * rowsByYear is the record count per year of the state the backup represents; null if unknown
+ * (backups found on disk before the catalog existed).
+ */
+public record BackupInfo(String name, LocalDateTime time, String reason, boolean delta, long bytes,
+                         String hash, Map<Integer, Integer> rowsByYear) {
+    /** Total record count, -1 if unknown. */
+    public int rows() {
+        if (rowsByYear == null) return -1;
+        int n = 0;
+        for (int c : rowsByYear.values()) n += c;
+        return n;
+    }
+}
@@ -0,0 +1,154 @@
+package com.pcelica.store;
+
+import com.pcelica.model.BeeUser;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Thins out old backups and gzips the ones that are kept. Runs on a background thread.
+ *
+ * Tiers (by age): everything from the last day, the newest backup per hour for a week,
+ * per day for a year and per month beyond that. The newest backup is always kept.
+ *
+ * Pruning a delta folds its rows into its children; pruning a base turns each child into
+ * a self-contained delta, so every kept backup can still be materialized.
+ */
+class BackupRetention implements Runnable {
+    private static final Duration KEEP_ALL = Duration.ofDays(1);
+    private static final Duration KEEP_HOURLY = Duration.ofDays(7);
+    private static final Duration KEEP_DAILY = Duration.ofDays(365);
+    private static final Duration COMPRESS_AFTER = Duration.ofDays(7);
+
+    private final Path dir;
+    private final BackupStore backups;
+    private final BackupStore.CsvSource baseReader;
+
+    private static class Node {
+        Path file;
+        String name;
+        LocalDateTime stamp;
+        String parent; // null for a base .csv, "" for a self-contained delta
+    }
+
+    BackupRetention(Path dir, BackupStore backups, BackupStore.CsvSource baseReader) {
+        this.dir = dir;
+        this.backups = backups;
+        this.baseReader = baseReader;
+    }
+
+    @Override
+    public void run() {
+        try {
+            apply(LocalDateTime.now());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    void apply(LocalDateTime now) throws IOException {
+        backups.beginScan();
+        String headName = backups.headName();
+
+        List<Node> nodes = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "backup_*.{csv,delta,csv.gz,delta.gz}")) {
+            for (Path p : ds) {
+                Node n = new Node();
+                n.file = p;
+                n.name = BackupStore.logicalName(p);
+                n.stamp = BackupStore.parseStamp(n.name);
+                if (n.stamp == null) continue; // not ours, leave it alone
+                n.parent = BackupStore.isDelta(p) ? BackupStore.readDeltaHeader(p)[1] : null;
+                nodes.add(n);
+            }
+        }
+        if (nodes.isEmpty()) return;
+
+        // newest first: the first backup to land in a bucket is the one that is kept
+        nodes.sort(Comparator.comparing((Node n) -> n.stamp).thenComparing(n -> n.name).reversed());
+        Set<String> buckets = new HashSet<>();
+        List<Node> prune = new ArrayList<>();
+        List<Node> keep = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            Node n = nodes.get(i);
+            boolean firstInBucket = buckets.add(bucketOf(n, now));
+            if (i == 0 || n.name.equals(headName) || firstInBucket) keep.add(n);
+            else prune.add(n);
+        }
+
+        Map<String, Node> byName = new HashMap<>();
+        for (Node n : nodes) byName.put(n.name, n);
+
+        // oldest first, so folded rows travel forward through the chain
+        Collections.reverse(prune);
+        for (Node x : prune) {
+            backups.chainWriteLock().lock();
+            try {
+                fold(x, byName);
+                if (backups.deleteIfUnreferenced(x.file)) byName.remove(x.name);
+            } finally {
+                backups.chainWriteLock().unlock();
+            }
+        }
+
+        for (Node n : keep) {
+            if (n.name.equals(headName) || n.file.getFileName().toString().endsWith(BackupStore.GZ_EXT)) continue;
+            if (Duration.between(n.stamp, now).compareTo(COMPRESS_AFTER) < 0) continue;
+            backups.chainWriteLock().lock();
+            try {
+                backups.compress(n.file);
+            } finally {
+                backups.chainWriteLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Rewrites every child of x so it no longer depends on x.
+     */
+    private void fold(Node x, Map<String, Node> byName) throws IOException {
+        List<Node> children = new ArrayList<>();
+        for (Node n : byName.values()) {
+            if (x.name.equals(n.parent)) children.add(n);
+        }
+        if (children.isEmpty()) return;
+
+        List<String[]> inherited = null;
+        if (x.parent != null) inherited = BackupStore.readDeltaRows(x.file);
+
+        for (Node c : children) {
+            String hash = BackupStore.readDeltaHeader(c.file)[2];
+            List<String[]> rows;
+            String newParent;
+            if (inherited != null) {
+                Map<String, String[]> merged = new LinkedHashMap<>();
+                for (String[] r : inherited) merged.put(r[1], r);
+                for (String[] r : BackupStore.readDeltaRows(c.file)) merged.put(r[1], r);
+                rows = new ArrayList<>(merged.values());
+                newParent = x.parent;
+            } else {
+                rows = new ArrayList<>();
+                for (BeeUser u : backups.materialize(c.file, baseReader)) rows.add(BackupStore.upsertRow(u));
+                newParent = "";
+            }
+            BackupStore.writeDeltaFile(c.file, newParent, hash, rows);
+            backups.rewritten(c.file);
+            c.parent = newParent;
+        }
+    }
+
+    private static String bucketOf(Node n, LocalDateTime now) {
+        LocalDateTime stamp = n.stamp;
+        Duration age = Duration.between(stamp, now);
+        if (age.compareTo(KEEP_ALL) < 0) return "A" + n.name;
+        if (age.compareTo(KEEP_HOURLY) < 0) return "H" + stamp.truncatedTo(ChronoUnit.HOURS);
+        if (age.compareTo(KEEP_DAILY) < 0) return "D" + stamp.toLocalDate();
+        return "M" + stamp.getYear() + "-" + stamp.getMonthValue();
+    }
+}
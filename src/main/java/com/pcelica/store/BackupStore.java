@@ -0,0 +1,487 @@
+package com.pcelica.store;
+
+import com.google.gson.Gson;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+import com.pcelica.model.BeeUser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Backup chain in data/: a full base snapshot (backup_&lt;stamp&gt;_&lt;reason&gt;.csv) followed by
+ * small per-mutation deltas (backup_&lt;stamp&gt;_&lt;reason&gt;.delta) keyed by record id.
+ *
+ * Every backup carries an order-independent content hash (sum of per-record hashes), so the
+ * hash can be updated in O(1) per change. A backup whose content matches an existing base is
+ * stored as an empty delta pointing at that base instead of another full copy.
+ *
+ * Old backups may be gzipped (name + ".gz") and thinned out by {@link BackupRetention};
+ * parent references always use the uncompressed name and are resolved to either form.
+ * A delta with an empty parent is self-contained (it holds every record).
+ * Every backup written, rewritten or deleted is recorded in the {@link BackupCatalog}.
+ */
+class BackupStore {
+    static final String DELTA_EXT = ".delta";
+    static final String GZ_EXT = ".gz";
+    private static final String DELTA_MARK = "#delta";
+    private static final String UPSERT = "U";
+    private static final String DELETE = "D";
+    // start a new base once a chain gets this long, so materializing stays cheap
+    private static final int MAX_CHAIN = 100;
+    private static final DateTimeFormatter BK = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+
+    /** One change to back up; before is null for an add, after is null for a delete. */
+    record Change(BeeUser before, BeeUser after) {}
+
+    interface CsvSource {
+        List<BeeUser> read(Path file) throws IOException;
+    }
+
+    /** Persisted in backup_head.json: newest backup in the chain and known bases by hash. */
+    private static class Head {
+        String file;
+        String hash;
+        int depth;
+        Map<String, String> bases = new HashMap<>();
+    }
+
+    private final Path dir;
+    private final Path headFile;
+    private final BackupCatalog catalog;
+    private Head head;
+    // readers of the chain vs. retention rewriting it; writing new backups never takes this lock
+    private final ReentrantReadWriteLock chainLock = new ReentrantReadWriteLock();
+    // parents referenced by backups written since the current retention scan started
+    private final Set<String> referencedSinceScan = new HashSet<>();
+
+    BackupStore(Path dir) {
+        this.dir = dir;
+        this.headFile = dir.resolve("backup_head.json");
+        this.catalog = new BackupCatalog(dir);
+        this.head = readHead();
+    }
+
+    /**
+     * STARTUP backup: skipped when the loaded content is identical to the newest backup.
+     * knownHash is the content hash if the caller already has it (null to compute it).
+     */
+    synchronized void startup(Supplier<? extends Collection<BeeUser>> all, Long knownHash) {
+        long hash = knownHash != null ? knownHash : contentHash(all.get());
+        if (head != null && resolve(head.file) != null && hex(hash).equals(head.hash)) return;
+        writeFull("STARTUP", all, hash);
+    }
+
+    /**
+     * Backup of the whole state (import, restore...). The records are only fetched when a
+     * new base has to be written, so an unchanged store costs nothing but its hash.
+     */
+    synchronized void full(String reason, Supplier<? extends Collection<BeeUser>> all, Long knownHash) {
+        writeFull(reason, all, knownHash != null ? knownHash : contentHash(all.get()));
+    }
+
+    /**
+     * True when the next backup has to be a full one (no chain yet, or the chain is too long),
+     * so the caller knows to pass the whole state to {@link #deltas}.
+     */
+    synchronized boolean needsFull() {
+        return head == null || head.depth >= MAX_CHAIN || resolve(head.file) == null;
+    }
+
+    /**
+     * One backup for a group of changes; only the last change per record id is stored.
+     * all is the state after the changes and is only used when {@link #needsFull()}.
+     */
+    synchronized void deltas(String reason, List<Change> changes, Collection<BeeUser> all) {
+        if (needsFull()) {
+            if (all != null) full(reason, () -> all, null);
+            return;
+        }
+        long hash = Long.parseUnsignedLong(head.hash, 16);
+        Map<String, String[]> rows = new LinkedHashMap<>();
+        // row counts follow from the parent's: every change moves one record in or out of a year
+        Map<Integer, Integer> counts = rowsOf(head.file);
+        for (Change c : changes) {
+            if (c.before() != null) {
+                hash -= recordHash(c.before());
+                if (counts != null) counts.merge(c.before().getYear(), -1, Integer::sum);
+            }
+            if (c.after() != null) {
+                hash += recordHash(c.after());
+                if (counts != null) counts.merge(c.after().getYear(), 1, Integer::sum);
+                rows.put(c.after().getId(), upsertRow(c.after()));
+            } else if (c.before() != null) {
+                rows.put(c.before().getId(), new String[]{DELETE, c.before().getId(), String.valueOf(c.before().getYear())});
+            }
+        }
+        if (counts != null) counts.values().removeIf(n -> n == 0);
+        writeDelta(reason, head.file, hash, new ArrayList<>(rows.values()), head.depth + 1, counts);
+    }
+
+    /**
+     * Modifiable copy of a backup's row counts from the catalog; null if unknown.
+     */
+    private Map<Integer, Integer> rowsOf(String name) {
+        BackupInfo b = catalog.get(name);
+        return b == null || b.rowsByYear() == null ? null : new TreeMap<>(b.rowsByYear());
+    }
+
+    private void writeFull(String reason, Supplier<? extends Collection<BeeUser>> all, long hash) {
+        String h = hex(hash);
+        try {
+            if (head != null && h.equals(head.hash) && resolve(head.file) != null) {
+                writeDelta(reason, head.file, hash, Collections.emptyList(), head.depth + 1, rowsOf(head.file));
+                return;
+            }
+            String base = head == null ? null : head.bases.get(h);
+            if (base != null && resolve(base) != null) {
+                writeDelta(reason, base, hash, Collections.emptyList(), 1, rowsOf(base));
+                return;
+            }
+            Path out = newBackupPath(reason, ".csv");
+            Map<Integer, Integer> counts = new TreeMap<>();
+            writeAtomically(out, writer -> {
+                writer.writeNext(DataStore.HEADER);
+                for (BeeUser u : all.get()) {
+                    writer.writeNext(DataStore.toRow(u));
+                    counts.merge(u.getYear(), 1, Integer::sum);
+                }
+            });
+            addToCatalog(out, reason, false, h, counts);
+            Head next = new Head();
+            next.file = out.getFileName().toString();
+            next.hash = h;
+            next.depth = 0;
+            if (head != null) next.bases.putAll(head.bases);
+            next.bases.put(h, next.file);
+            saveHead(next);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void writeDelta(String reason, String parent, long hash, List<String[]> rows, int depth,
+                            Map<Integer, Integer> counts) {
+        try {
+            Path out = newBackupPath(reason, DELTA_EXT);
+            writeDeltaFile(out, parent, hex(hash), rows);
+            referencedSinceScan.add(parent);
+            addToCatalog(out, reason, true, hex(hash), counts);
+            Head next = new Head();
+            next.file = out.getFileName().toString();
+            next.hash = hex(hash);
+            next.depth = depth;
+            if (head != null) next.bases.putAll(head.bases);
+            saveHead(next);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void addToCatalog(Path file, String reason, boolean delta, String hash, Map<Integer, Integer> counts) throws IOException {
+        String name = file.getFileName().toString();
+        catalog.add(new BackupInfo(name, parseStamp(name), reason == null ? "AUTO" : reason, delta, Files.size(file), hash,
+                counts == null ? null : Collections.unmodifiableMap(counts)));
+    }
+
+    /**
+     * Every catalogued backup, newest first; the backup files themselves are not touched.
+     */
+    List<BackupInfo> catalog() {
+        return catalog.list();
+    }
+
+    /**
+     * Records the new size of a backup that retention rewrote.
+     */
+    void rewritten(Path file) throws IOException {
+        catalog.resized(logicalName(file), Files.size(file));
+    }
+
+    /**
+     * Rebuilds the full record list a backup represents: its base plus every delta up to it.
+     */
+    List<BeeUser> materialize(Path file, CsvSource baseReader) throws IOException {
+        chainLock.readLock().lock();
+        try {
+            Deque<Path> chain = new ArrayDeque<>();
+            Path p = file;
+            while (p != null && isDelta(p)) {
+                if (chain.size() > 10_000) throw new IOException("Backup lanac je predug ili kružan: " + file);
+                chain.push(p);
+                String parent = readDeltaHeader(p)[1];
+                if (parent.isEmpty()) {
+                    p = null;
+                } else {
+                    p = resolve(parent);
+                    if (p == null) throw new IOException("Nedostaje roditeljski backup: " + parent);
+                }
+            }
+            Map<String, BeeUser> byId = new LinkedHashMap<>();
+            if (p != null) {
+                for (BeeUser u : baseReader.read(p)) byId.put(u.getId(), u);
+            }
+            while (!chain.isEmpty()) {
+                for (String[] row : readDeltaRows(chain.pop())) {
+                    if (UPSERT.equals(row[0])) {
+                        BeeUser u = DataStore.fromRow(Arrays.copyOfRange(row, 1, row.length));
+                        byId.put(u.getId(), u);
+                    } else if (DELETE.equals(row[0]) && row.length > 1) {
+                        byId.remove(row[1]);
+                    }
+                }
+            }
+            return new ArrayList<>(byId.values());
+        } finally {
+            chainLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Hands the records of a full backup (not a delta) to out in file order, reading one row at a time.
+     * A row that cannot be parsed is skipped. Holds the chain read lock, so retention cannot fold,
+     * gzip or delete the backup halfway; if it was gzipped since it was picked, the gzipped copy is read.
+     */
+    void forEachRecord(Path file, Consumer<BeeUser> out) throws IOException {
+        chainLock.readLock().lock();
+        try {
+            Path current = Files.exists(file) ? file : resolve(logicalName(file));
+            if (current == null) throw new IOException("Backup više ne postoji: " + file.getFileName());
+            readRecords(current, out);
+        } finally {
+            chainLock.readLock().unlock();
+        }
+    }
+
+    private static void readRecords(Path file, Consumer<BeeUser> out) throws IOException {
+        try (CSVReader reader = new CSVReader(openReader(file))) {
+            reader.readNext(); // header
+            String[] row;
+            while ((row = reader.readNext()) != null) {
+                if (row.length == 1 && row[0].isEmpty()) continue;
+                BeeUser u;
+                try {
+                    u = DataStore.fromRow(row);
+                } catch (RuntimeException ex) {
+                    CsvLoader.logSkipped(new CsvLoader.RowError(file, (int) reader.getLinesRead(), ex.getMessage()));
+                    continue;
+                }
+                out.accept(u);
+            }
+        } catch (com.opencsv.exceptions.CsvValidationException e) {
+            throw new IOException("CSV validation error", e);
+        }
+    }
+
+    static boolean isDelta(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(DELTA_EXT) || name.endsWith(DELTA_EXT + GZ_EXT);
+    }
+
+    /**
+     * Opens a backup or store file for reading, decompressing it if it was gzipped.
+     */
+    static BufferedReader openReader(Path file) throws IOException {
+        if (file.getFileName().toString().endsWith(GZ_EXT)) {
+            return new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8));
+        }
+        return Files.newBufferedReader(file);
+    }
+
+    /**
+     * Finds a backup by its uncompressed name; null if it no longer exists in either form.
+     */
+    Path resolve(String name) {
+        Path plain = dir.resolve(name);
+        if (Files.exists(plain)) return plain;
+        Path gz = dir.resolve(name + GZ_EXT);
+        return Files.exists(gz) ? gz : null;
+    }
+
+    /**
+     * Timestamp from a backup_&lt;yyyyMMdd_HHmmss&gt;_... file name, or null if the name does not match.
+     */
+    static LocalDateTime parseStamp(String fileName) {
+        if (!fileName.startsWith("backup_") || fileName.length() < 22) return null;
+        try {
+            return LocalDateTime.parse(fileName.substring(7, 22), BK);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    static String logicalName(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(GZ_EXT) ? name.substring(0, name.length() - GZ_EXT.length()) : name;
+    }
+
+    static List<String[]> readDeltaRows(Path delta) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (CSVReader reader = new CSVReader(openReader(delta))) {
+            reader.readNext(); // header
+            String[] row;
+            while ((row = reader.readNext()) != null) {
+                if (row.length > 0) rows.add(row);
+            }
+        } catch (com.opencsv.exceptions.CsvValidationException e) {
+            throw new IOException("CSV validation error", e);
+        }
+        return rows;
+    }
+
+    static String[] readDeltaHeader(Path delta) throws IOException {
+        try (CSVReader reader = new CSVReader(openReader(delta))) {
+            String[] header = reader.readNext();
+            if (header == null || header.length < 3 || !DELTA_MARK.equals(header[0])) {
+                throw new IOException("Neispravan delta backup: " + delta.getFileName());
+            }
+            return header;
+        } catch (com.opencsv.exceptions.CsvValidationException e) {
+            throw new IOException("CSV validation error", e);
+        }
+    }
+
+    static void writeDeltaFile(Path out, String parent, String hash, List<String[]> rows) throws IOException {
+        writeAtomically(out, writer -> {
+            writer.writeNext(new String[]{DELTA_MARK, parent, hash});
+            for (String[] r : rows) writer.writeNext(r);
+        });
+    }
+
+    static String[] upsertRow(BeeUser u) {
+        String[] row = DataStore.toRow(u);
+        String[] out = new String[row.length + 1];
+        out[0] = UPSERT;
+        System.arraycopy(row, 0, out, 1, row.length);
+        return out;
+    }
+
+    private Path newBackupPath(String reason, String ext) {
+        String stamp = LocalDateTime.now().format(BK);
+        String r = reason == null ? "AUTO" : reason;
+        Path out = dir.resolve(String.format("backup_%s_%s%s", stamp, r, ext));
+        // several backups within one second: keep them all, the chain must not overwrite itself
+        for (int n = 2; Files.exists(out); n++) {
+            out = dir.resolve(String.format("backup_%s_%s-%d%s", stamp, r, n, ext));
+        }
+        return out;
+    }
+
+    private interface RowWriter {
+        void write(CSVWriter writer) throws IOException;
+    }
+
+    private static void writeAtomically(Path target, RowWriter body) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Writer out = target.getFileName().toString().endsWith(GZ_EXT)
+                ? new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(tmp)), StandardCharsets.UTF_8)
+                : Files.newBufferedWriter(tmp);
+        try (CSVWriter writer = new CSVWriter(out)) {
+            body.write(writer);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ---- hooks for BackupRetention (runs on its own thread) ----
+
+    synchronized String headName() {
+        return head == null ? null : head.file;
+    }
+
+    synchronized void beginScan() {
+        referencedSinceScan.clear();
+    }
+
+    ReentrantReadWriteLock.WriteLock chainWriteLock() {
+        return chainLock.writeLock();
+    }
+
+    /**
+     * Deletes a pruned backup unless a backup written since the scan started points at it.
+     * Holds the BackupStore monitor only for the check and the delete itself.
+     */
+    synchronized boolean deleteIfUnreferenced(Path file) throws IOException {
+        String name = logicalName(file);
+        if (referencedSinceScan.contains(name) || (head != null && name.equals(head.file))) return false;
+        Files.deleteIfExists(file);
+        catalog.remove(name);
+        if (head != null && head.bases.values().remove(name)) saveHead(head);
+        return true;
+    }
+
+    /**
+     * Replaces a backup with a gzipped copy; parents keep referring to it by its plain name.
+     */
+    void compress(Path file) throws IOException {
+        Path gz = file.resolveSibling(file.getFileName() + GZ_EXT);
+        Path tmp = gz.resolveSibling(gz.getFileName() + ".tmp");
+        try (InputStream in = Files.newInputStream(file);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+            in.transferTo(out);
+        }
+        Files.move(tmp, gz, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(file);
+        catalog.resized(logicalName(gz), Files.size(gz));
+    }
+
+    static long contentHash(Collection<BeeUser> all) {
+        long sum = 0;
+        for (BeeUser u : all) sum += recordHash(u);
+        return sum;
+    }
+
+    static long recordHash(BeeUser u) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (String field : DataStore.toRow(u)) {
+            if (field != null) md.update(field.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0x1f);
+        }
+        byte[] d = md.digest();
+        long h = 0;
+        for (int i = 0; i < 8; i++) h = (h << 8) | (d[i] & 0xff);
+        return h;
+    }
+
+    static String hex(long h) {
+        return String.format("%016x", h);
+    }
+
+    private Head readHead() {
+        if (!Files.exists(headFile)) return null;
+        try (Reader r = Files.newBufferedReader(headFile)) {
+            Head h = new Gson().fromJson(r, Head.class);
+            if (h == null || h.file == null || h.hash == null) return null;
+            if (h.bases == null) h.bases = new HashMap<>();
+            return h;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    private void saveHead(Head next) throws IOException {
+        Path tmp = headFile.resolveSibling(headFile.getFileName() + ".tmp");
+        try (Writer w = Files.newBufferedWriter(tmp)) {
+            new Gson().toJson(next, w);
+        }
+        Files.move(tmp, headFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        head = next;
+    }
+}
@@ -0,0 +1,212 @@
+package com.pcelica.store;
+
+import com.pcelica.model.BeeUser;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+
+import static com.pcelica.store.StringDictionary.canonical;
+
+/**
+ * Binary copy of the store (data/store.bin), written on clean shutdown so years can be
+ * loaded on the next start without parsing CSV.
+ *
+ * Layout (big-endian): int magic, int version, int yearCount, then per year
+ * [int year, int count, long contentHash, long offset], then the year blocks. A record is
+ * id, firstName, lastName, gender, int birthDate, birthPlace, residenceCity, int colonies,
+ * docNumber, int seqNumber, int certificateDate. Strings are an int byte length
+ * (-1 for null) followed by UTF-8; dates are epoch days (Integer.MIN_VALUE for null).
+ *
+ * A year block is only valid while its hash matches the year file in the manifest; a stale
+ * year is read from CSV instead. Only the offset table is kept in memory. Blocks are read
+ * with positional reads rather than a long-lived mapping, because an open mapping would
+ * keep the file from being replaced on Windows.
+ */
+class BinarySnapshot {
+    private static final int MAGIC = 0x50435342; // "PCSB"
+    private static final int VERSION = 2;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int ENTRY_BYTES = 24;
+
+    private record YearEntry(int count, long hash, long offset, long end) {}
+
+    private final Path file;
+    private final Map<Integer, YearEntry> table = new TreeMap<>();
+
+    private BinarySnapshot(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the offset table; null if the file does not exist.
+     */
+    static BinarySnapshot open(Path file) throws IOException {
+        if (!Files.exists(file)) return null;
+        BinarySnapshot snap = new BinarySnapshot(file);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < 12) throw new IOException("Oštećen store.bin");
+            ByteBuffer head = readFully(ch, 0, 12);
+            if (head.getInt() != MAGIC || head.getInt() != VERSION) throw new IOException("Nepoznat format store.bin");
+            int years = head.getInt();
+            long dataStart = 12L + (long) years * ENTRY_BYTES;
+            if (years < 0 || dataStart > size) throw new IOException("Oštećen store.bin");
+            ByteBuffer t = readFully(ch, 12, years * ENTRY_BYTES);
+            int[] ys = new int[years];
+            int[] counts = new int[years];
+            long[] hashes = new long[years];
+            long[] offsets = new long[years + 1];
+            for (int i = 0; i < years; i++) {
+                ys[i] = t.getInt();
+                counts[i] = t.getInt();
+                hashes[i] = t.getLong();
+                offsets[i] = t.getLong();
+            }
+            offsets[years] = size;
+            for (int i = 0; i < years; i++) {
+                if (offsets[i] < dataStart || offsets[i] > offsets[i + 1]) throw new IOException("Oštećen store.bin");
+                snap.table.put(ys[i], new YearEntry(counts[i], hashes[i], offsets[i], offsets[i + 1]));
+            }
+        }
+        return snap;
+    }
+
+    /**
+     * True if the snapshot holds the given year with exactly this content hash.
+     */
+    boolean matches(int year, Long hash) {
+        YearEntry e = table.get(year);
+        return e != null && hash != null && e.hash() == hash;
+    }
+
+    List<BeeUser> read(int year) throws IOException {
+        YearEntry e = table.get(year);
+        if (e == null) return new ArrayList<>();
+        ByteBuffer in = ByteBuffer.wrap(rawBlock(e));
+        List<BeeUser> out = new ArrayList<>(e.count());
+        try {
+            for (int i = 0; i < e.count(); i++) {
+                // arguments are evaluated left to right, i.e. in record layout order
+                out.add(new BeeUser(readString(in), readString(in), readString(in), canonical(readString(in)),
+                        readDate(in), canonical(readString(in)), canonical(readString(in)), in.getInt(),
+                        readString(in), in.getInt(), year, readDate(in)));
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            throw new IOException("Oštećen store.bin (godina " + year + ")", ex);
+        }
+        return out;
+    }
+
+    private byte[] rawBlock(YearEntry e) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readFully(ch, e.offset(), (int) (e.end() - e.offset())).array();
+        }
+    }
+
+    /**
+     * Writes a new snapshot for every year in hashes: loaded years are encoded from memory,
+     * the others are copied from the previous snapshot if their block there is still valid,
+     * otherwise they are left out (and read from CSV next time).
+     */
+    static void write(Path file, Map<Integer, ? extends List<BeeUser>> loaded, Map<Integer, Long> hashes,
+                      BinarySnapshot previous) throws IOException {
+        Map<Integer, byte[]> blocks = new TreeMap<>();
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (Map.Entry<Integer, Long> h : hashes.entrySet()) {
+            int year = h.getKey();
+            List<BeeUser> users = loaded.get(year);
+            if (users != null) {
+                if (users.isEmpty()) continue;
+                blocks.put(year, encode(users));
+                counts.put(year, users.size());
+            } else if (previous != null && previous.matches(year, h.getValue())) {
+                YearEntry e = previous.table.get(year);
+                blocks.put(year, previous.rawBlock(e));
+                counts.put(year, e.count());
+            }
+        }
+
+        long offset = 12L + (long) blocks.size() * ENTRY_BYTES;
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(blocks.size());
+            for (Map.Entry<Integer, byte[]> e : blocks.entrySet()) {
+                out.writeInt(e.getKey());
+                out.writeInt(counts.get(e.getKey()));
+                out.writeLong(hashes.get(e.getKey()));
+                out.writeLong(offset);
+                offset += e.getValue().length;
+            }
+            for (byte[] block : blocks.values()) out.write(block);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static byte[] encode(List<BeeUser> users) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(users.size() * 128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (BeeUser u : users) {
+                writeString(out, u.getId());
+                writeString(out, u.getFirstName());
+                writeString(out, u.getLastName());
+                writeString(out, u.getGender());
+                writeDate(out, u.getBirthDate());
+                writeString(out, u.getBirthPlace());
+                writeString(out, u.getResidenceCity());
+                out.writeInt(u.getColonies());
+                writeString(out, u.getDocNumber());
+                out.writeInt(u.getSeqNumber());
+                writeDate(out, u.getCertificateDate());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ByteBuffer readFully(FileChannel ch, long pos, int len) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(len);
+        while (b.hasRemaining()) {
+            if (ch.read(b, pos + b.position()) < 0) throw new IOException("Oštećen store.bin");
+        }
+        b.flip();
+        return b;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int len = in.getInt();
+        if (len < 0) return null;
+        if (len > in.remaining()) throw new BufferUnderflowException();
+        String s = new String(in.array(), in.arrayOffset() + in.position(), len, StandardCharsets.UTF_8);
+        in.position(in.position() + len);
+        return s;
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate d) throws IOException {
+        out.writeInt(d == null ? NO_DATE : (int) d.toEpochDay());
+    }
+
+    private static LocalDate readDate(ByteBuffer in) {
+        int v = in.getInt();
+        return v == NO_DATE ? null : LocalDate.ofEpochDay(v);
+    }
+}
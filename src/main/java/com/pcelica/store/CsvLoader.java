@@ -0,0 +1,270 @@
+package com.pcelica.store;
+
+import com.pcelica.model.BeeUser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Parallel loader for store CSV files (UTF-8, optionally gzipped, first line is the header).
+ *
+ * Files are read whole and cut into chunks at record boundaries (a quote-aware byte scan),
+ * then the chunks are parsed on the common fork-join pool. Numbers and dates are parsed
+ * straight from the text without exceptions; a bad row is recorded in the result and skipped.
+ */
+final class CsvLoader {
+    private static final Logger LOGGER = Logger.getLogger(CsvLoader.class.getName());
+    // a chunk is closed at the first record boundary after this many bytes
+    private static final int CHUNK_BYTES = 256 * 1024;
+    private static final int MAX_FIELDS = 16;
+    private static final int INVALID = Integer.MIN_VALUE;
+
+    record RowError(Path file, int line, String message) {
+        @Override
+        public String toString() {
+            return file.getFileName() + ", red " + line + ": " + message;
+        }
+    }
+
+    /** Records in file order plus every row that had to be skipped. */
+    record Result(List<BeeUser> users, List<RowError> errors) {}
+
+    private record Chunk(Path file, byte[] data, int start, int end, int firstLine) {}
+
+    private record Parsed(List<BeeUser> users, List<RowError> errors) {}
+
+    private CsvLoader() {}
+
+    static Result read(List<Path> files) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        for (Path f : files) split(f, readBytes(f), chunks);
+
+        List<Parsed> parsed = chunks.size() == 1
+                ? List.of(parse(chunks.get(0)))
+                : chunks.parallelStream().map(CsvLoader::parse).collect(Collectors.toList());
+
+        int total = 0;
+        for (Parsed p : parsed) total += p.users().size();
+        List<BeeUser> users = new ArrayList<>(total);
+        List<RowError> errors = new ArrayList<>();
+        for (Parsed p : parsed) {
+            users.addAll(p.users());
+            errors.addAll(p.errors());
+        }
+        return new Result(users, errors);
+    }
+
+    /**
+     * Parses the one record in data[start, end), e.g. a row located through an offset index.
+     * Returns null and logs the reason if the row is malformed.
+     */
+    static BeeUser parseRecord(Path file, byte[] data, int start, int end, int line) {
+        Parsed p = parse(new Chunk(file, data, start, end, line));
+        p.errors().forEach(CsvLoader::logSkipped);
+        return p.users().isEmpty() ? null : p.users().get(0);
+    }
+
+    /**
+     * Logs a row skipped while reading a backup or a single record. Rows skipped by load() are
+     * collected by the store instead and shown to the user.
+     */
+    static void logSkipped(RowError e) {
+        LOGGER.log(Level.WARNING, "CSV: preskočen " + e);
+    }
+
+    static byte[] readBytes(Path file) throws IOException {
+        if (file.getFileName().toString().endsWith(BackupStore.GZ_EXT)) {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+                return in.readAllBytes();
+            }
+        }
+        return Files.readAllBytes(file);
+    }
+
+    /**
+     * Skips the BOM and header, then cuts the rest of the file into chunks that end
+     * on a newline outside quotes.
+     */
+    private static void split(Path file, byte[] data, List<Chunk> out) {
+        int pos = 0;
+        if (data.length >= 3 && (data[0] & 0xFF) == 0xEF && (data[1] & 0xFF) == 0xBB && (data[2] & 0xFF) == 0xBF) pos = 3;
+        boolean quoted = false;
+        boolean header = true;
+        int line = 1;
+        int chunkStart = -1;
+        int chunkLine = 0;
+        for (int i = pos; i < data.length; i++) {
+            byte b = data[i];
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == '\n') {
+                line++;
+                if (quoted) continue;
+                if (header) {
+                    header = false;
+                    chunkStart = i + 1;
+                    chunkLine = line;
+                } else if (i + 1 - chunkStart >= CHUNK_BYTES) {
+                    out.add(new Chunk(file, data, chunkStart, i + 1, chunkLine));
+                    chunkStart = i + 1;
+                    chunkLine = line;
+                }
+            }
+        }
+        if (chunkStart >= 0 && chunkStart < data.length) out.add(new Chunk(file, data, chunkStart, data.length, chunkLine));
+    }
+
+    private static Parsed parse(Chunk c) {
+        String s = new String(c.data(), c.start(), c.end() - c.start(), StandardCharsets.UTF_8);
+        List<BeeUser> users = new ArrayList<>(s.length() / 120 + 1);
+        List<RowError> errors = new ArrayList<>();
+        int[] from = new int[MAX_FIELDS];
+        int[] to = new int[MAX_FIELDS];
+        boolean[] escaped = new boolean[MAX_FIELDS];
+        int n = s.length();
+        int p = 0;
+        int line = c.firstLine();
+        while (p < n) {
+            int rowLine = line;
+            int count = 0;
+            boolean broken = false;
+            // one record: fields up to an unquoted newline or the end of the chunk
+            while (true) {
+                int f = count < MAX_FIELDS ? count : MAX_FIELDS - 1;
+                boolean esc = false;
+                int start;
+                int end;
+                if (p < n && s.charAt(p) == '"') {
+                    start = ++p;
+                    while (true) {
+                        if (p >= n) {
+                            broken = true;
+                            break;
+                        }
+                        char ch = s.charAt(p);
+                        if (ch == '"') {
+                            if (p + 1 < n && s.charAt(p + 1) == '"') {
+                                esc = true;
+                                p += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        if (ch == '\n') line++;
+                        p++;
+                    }
+                    end = p;
+                    if (!broken) p++; // closing quote
+                } else {
+                    start = p;
+                    while (p < n) {
+                        char ch = s.charAt(p);
+                        if (ch == ',' || ch == '\n' || ch == '\r') break;
+                        p++;
+                    }
+                    end = p;
+                }
+                from[f] = start;
+                to[f] = end;
+                escaped[f] = esc;
+                count++;
+                if (broken) break;
+                while (p < n && s.charAt(p) != ',' && s.charAt(p) != '\n') p++; // stray chars, \r
+                if (p < n && s.charAt(p) == ',') {
+                    p++;
+                    continue;
+                }
+                if (p < n) {
+                    p++;
+                    line++;
+                }
+                break;
+            }
+            if (broken) {
+                errors.add(new RowError(c.file(), rowLine, "navodnici nisu zatvoreni"));
+                break;
+            }
+            if (count == 1 && from[0] == to[0]) continue; // blank line
+            String err = count < 11 ? "očekivano 11 ili 12 kolona, pronađeno " + count
+                    : addRow(users, s, from, to, escaped, count);
+            if (err != null) errors.add(new RowError(c.file(), rowLine, err));
+        }
+        return new Parsed(users, errors);
+    }
+
+    /** Adds the record in the field ranges to users; returns an error message instead of throwing. */
+    private static String addRow(List<BeeUser> users, String s, int[] from, int[] to, boolean[] esc, int count) {
+        LocalDate birth = parseDate(s, from[4], to[4]);
+        if (birth == null) return "neispravan datum rođenja '" + s.substring(from[4], to[4]) + "'";
+        int colonies = parseInt(s, from[7], to[7]);
+        if (colonies == INVALID) return "neispravan broj košnica '" + s.substring(from[7], to[7]) + "'";
+        int seq = parseInt(s, from[9], to[9]);
+        if (seq == INVALID) return "neispravan redni broj '" + s.substring(from[9], to[9]) + "'";
+        int year = parseInt(s, from[10], to[10]);
+        if (year == INVALID) return "neispravna godina '" + s.substring(from[10], to[10]) + "'";
+        LocalDate cert = null;
+        if (count > 11 && from[11] < to[11]) {
+            cert = parseDate(s, from[11], to[11]);
+            if (cert == null) return "neispravan datum potvrde '" + s.substring(from[11], to[11]) + "'";
+        }
+        users.add(new BeeUser(
+                field(s, from[0], to[0], esc[0]),
+                field(s, from[1], to[1], esc[1]),
+                field(s, from[2], to[2], esc[2]),
+                StringDictionary.canonical(field(s, from[3], to[3], esc[3])),
+                birth,
+                StringDictionary.canonical(field(s, from[5], to[5], esc[5])),
+                StringDictionary.canonical(field(s, from[6], to[6], esc[6])),
+                colonies,
+                field(s, from[8], to[8], esc[8]),
+                seq,
+                year,
+                cert));
+        return null;
+    }
+
+    private static String field(String s, int from, int to, boolean escaped) {
+        String v = s.substring(from, to);
+        return escaped ? v.replace("\"\"", "\"") : v;
+    }
+
+    /** Optional sign and up to 9 digits; INVALID otherwise. */
+    private static int parseInt(String s, int from, int to) {
+        boolean neg = from < to && s.charAt(from) == '-';
+        int i = neg ? from + 1 : from;
+        if (i >= to || to - i > 9) return INVALID;
+        int v = 0;
+        for (; i < to; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) return INVALID;
+            v = v * 10 + d;
+        }
+        return neg ? -v : v;
+    }
+
+    /**
+     * yyyy-MM-dd; null if malformed. Like the SMART resolver of the old formatter,
+     * a day 29-31 past the end of the month is clamped to its last day.
+     */
+    private static LocalDate parseDate(String s, int from, int to) {
+        if (to - from != 10 || s.charAt(from + 4) != '-' || s.charAt(from + 7) != '-') return null;
+        int y = parseInt(s, from, from + 4);
+        int m = parseInt(s, from + 5, from + 7);
+        int d = parseInt(s, from + 8, from + 10);
+        if (y == INVALID || m == INVALID || d == INVALID || y < 0) return null;
+        if (m < 1 || m > 12 || d < 1 || d > 31) return null;
+        return LocalDate.of(y, m, Math.min(d, Month.of(m).length(Year.isLeap(y))));
+    }
+}
@@ -1,313 +1,1056 @@
 package com.pcelica.store;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import com.opencsv.CSVReader;
+import com.google.gson.*;
 import com.opencsv.CSVWriter;
 import com.pcelica.model.BeeUser;
 
 import java.io.*;
-import java.lang.reflect.Type;
 import java.nio.file.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 public class DataStore {
     private static final Path DATA_DIR = Paths.get("data");
+    // single-file layout of older versions; migrated into YEARS_DIR on load
     private static final Path CSV_FILE = DATA_DIR.resolve("store.csv");
+    private static final Path YEARS_DIR = DATA_DIR.resolve("years");
+    // binary copy of the year files written on clean shutdown, read instead of a year's CSV while still valid
+    private static final Path BIN_FILE = DATA_DIR.resolve("store.bin");
     private static final Path RESERVED_FILE = DATA_DIR.resolve("reserved_numbers.json");
-    private final Map<Integer, List<BeeUser>> byYear = new HashMap<>();
-    private final Map<Integer, Set<Integer>> reservedByYear = new HashMap<>();
-    // startup snapshot (deep copies)
-    private List<BeeUser> initialSnapshot = new ArrayList<>();
-    private final Map<Integer, Set<Integer>> initialReservedByYear = new HashMap<>();
-    private final DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-    private final DateTimeFormatter BK = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final Path JOURNAL_FILE = DATA_DIR.resolve("journal.log");
+    // journal is folded into the year files once it holds this many records
+    private static final int COMPACT_THRESHOLD = 500;
+    // group commit: a burst of mutations is written once it is this old or this large
+    private static final long COMMIT_DELAY_MS = Long.getLong("pcelica.commit.delayMs", 200);
+    private static final int COMMIT_MAX_BATCH = Integer.getInteger("pcelica.commit.maxBatch", 64);
+    // 0 keeps every loaded year in memory; otherwise the least recently used unchanged years are dropped
+    private static final int MAX_LOADED_YEARS = Integer.getInteger("pcelica.store.maxLoadedYears", 0);
+    static final String[] HEADER = {"id","firstName","lastName","gender","birthDate","birthPlace","residenceCity","colonies","docNumber","seqNumber","year","certificateDate"};
+    // loaded years only: a year in storedYears but not here is unchanged on disk and loads on first access.
+    // Segments are immutable; a change to a year publishes a new segment (putYear),
+    // so a segment handed out to a reader stays as it was.
+    private final Map<Integer, YearSegment> byYear = new HashMap<>();
+    // read views of the loaded years, replaced together with their segment
+    private final Map<Integer, YearView> views = new HashMap<>();
+    // bumped by every change to a year, the version of the view published with it
+    private long version;
+    // every record of every year, built on demand and dropped whenever a year changes
+    private volatile List<BeeUser> allUsers;
+    /**
+     * What readers see without locking: the views of the loaded years and the year index.
+     * Writers hold the monitor and publish a new state once a change is complete, so a reader
+     * gets either the state before or after it. Only a year that is not loaded yet sends a reader
+     * to the monitor.
+     */
+    private record ReadState(long version, Map<Integer, YearView> views, Set<Integer> years) {}
+    private volatile ReadState readState = new ReadState(0, Map.of(), Set.of());
+    // set while load() rebuilds the store, so readers never see it half loaded
+    private boolean loading;
+    private final Set<Integer> storedYears = new HashSet<>();
+    // loaded years, least recently used first
+    private final LinkedHashSet<Integer> recentYears = new LinkedHashSet<>();
+    // years changed since the initial snapshot; they stay in memory
+    private final Set<Integer> modifiedYears = new HashSet<>();
+    // ids of the loaded years by normalized name, updated with every change to byYear
+    // (lookups by id go through the segment of the year)
+    private final NameIndex names = new NameIndex();
+    private BinarySnapshot binSnapshot;
+    private final Map<Integer, SeqAllocator> reservedByYear = new HashMap<>();
+    private final MutationJournal journal = new MutationJournal(JOURNAL_FILE);
+    private final BackupStore backups = new BackupStore(DATA_DIR);
+    private final YearFiles yearFiles = new YearFiles(YEARS_DIR);
+    // prunes and gzips old backups; a single low-priority daemon thread, never the EDT
+    private final ScheduledExecutorService retentionExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "backup-retention");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+    // mutations queued for the commit thread (guarded by this)
+    private record Pending(MutationJournal.Op op, BeeUser before, BeeUser after, String reason) {}
+    private final List<Pending> pending = new ArrayList<>();
+    // reserved number ranges queued for the journal (guarded by this)
+    private final List<MutationJournal.Entry> pendingReservations = new ArrayList<>();
+    // serializes disk writes between the commit thread and full rewrites done by the caller
+    private final ReentrantLock ioLock = new ReentrantLock();
+    // bumped by every full rewrite; a batch drained before it is already on disk (guarded by this + ioLock)
+    private long persistEpoch;
+    private final GroupCommitExecutor committer;
+    // years with journal records that are not yet in their year file (guarded by ioLock)
+    private final Set<Integer> dirtyYears = new HashSet<>();
+    private volatile LocalDateTime lastCommit;
+    // why a commit left changes only in memory; cleared by a full rewrite or a reload
+    private volatile String commitError;
+    private volatile Runnable commitListener;
+    // startup snapshot, per year as the years get loaded: the segments published at that time
+    private final Map<Integer, YearSegment> initialByYear = new HashMap<>();
+    private final Map<Integer, SeqAllocator> initialReservedByYear = new HashMap<>();
+    // rows skipped while loading since the last load()
+    private final List<CsvLoader.RowError> loadErrors = new ArrayList<>();
+    private static final DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
     public DataStore() throws IOException {
         if (!Files.exists(DATA_DIR)) Files.createDirectories(DATA_DIR);
         if (!Files.exists(Paths.get("exports"))) Files.createDirectories(Paths.get("exports"));
+        committer = new GroupCommitExecutor("store-commit", COMMIT_DELAY_MS, COMMIT_MAX_BATCH, this::commitPending);
         load();
+        // first run an hour after startup, away from the startup load and backup; then hourly
+        retentionExecutor.scheduleWithFixedDelay(new BackupRetention(DATA_DIR, backups, this::readPlainCsv), 60, 60, TimeUnit.MINUTES);
     }
 
-    public void load() throws IOException {
-        // Load CSV if exists
-        if (Files.exists(CSV_FILE)) {
-            try (CSVReader reader = new CSVReader(new FileReader(CSV_FILE.toFile()))) {
-                String[] header = reader.readNext(); // header
-                String[] row;
-                List<BeeUser> all = new ArrayList<>();
-                while ((row = reader.readNext()) != null) {
-                    try {
-                        BeeUser u = new BeeUser();
-                        u.setId(row[0]);
-                        u.setFirstName(row[1]);
-                        u.setLastName(row[2]);
-                        u.setGender(row[3]);
-                        u.setBirthDate(LocalDate.parse(row[4], DF));
-                        u.setBirthPlace(row[5]);
-                        u.setResidenceCity(row[6]);
-                        u.setColonies(Integer.parseInt(row[7]));
-                        u.setDocNumber(row[8]);
-                        u.setSeqNumber(Integer.parseInt(row[9]));
-                        u.setYear(Integer.parseInt(row[10]));
-                        // Handle certificate date - check if column exists
-                        // nakon u.setYear(Integer.parseInt(row[10]));
-                        if (row.length > 11 && row[11] != null && !row[11].isEmpty()) {
-                            u.setCertificateDate(LocalDate.parse(row[11], DF));
-                        }
-                        all.add(u);
-                        byYear.computeIfAbsent(u.getYear(), k -> new ArrayList<>()).add(u);
-                        if (u.getSeqNumber() > 0) reservedByYear.computeIfAbsent(u.getYear(), k -> new HashSet<>()).add(u.getSeqNumber());
-                    } catch (Exception ex) {
-                        ex.printStackTrace();
-                    }
-                }
-                initialSnapshot = all.stream().map(this::deepCopy).collect(Collectors.toList());
-                createBackupFile("STARTUP");
-            } catch (com.opencsv.exceptions.CsvValidationException e) {
-                throw new IOException("Greška pri validaciji CSV fajla", e);
-            }
+    public synchronized void load() throws IOException {
+        ioLock.lock();
+        try {
+            persistEpoch++;
+            pending.clear();
+            pendingReservations.clear();
+            dirtyYears.clear();
+            loading = true;
+            committer.allCommitted(); // the queue was dropped, memory is what is on disk
+            commitError = null;
+            loadFiles();
+        } finally {
+            loading = false;
+            publish();
+            ioLock.unlock();
         }
+    }
 
-        // Load reserved numbers (if any)
+    /**
+     * Only the year index and the reserved numbers are read here; years are loaded on first
+     * access, except the ones the journal touches (replayed and folded into their files).
+     */
+    private void loadFiles() throws IOException {
+        clearYears();
+        storedYears.clear();
+        recentYears.clear();
+        modifiedYears.clear();
+        initialByYear.clear();
+        reservedByYear.clear();
+        initialReservedByYear.clear();
+        loadErrors.clear();
+
+        // Load reserved numbers (if any); numbers found in loaded rows are added to these
         if (Files.exists(RESERVED_FILE)) {
-            String json = new String(Files.readAllBytes(RESERVED_FILE));
-            Gson g = new Gson();
-            Type t = new TypeToken<Map<String, List<Integer>>>(){}.getType();
-            Map<String, List<Integer>> map = g.fromJson(json, t);
-            if (map != null) {
-                for (Map.Entry<String, List<Integer>> e : map.entrySet()) {
-                    int y = Integer.parseInt(e.getKey());
-                    reservedByYear.put(y, new HashSet<>(e.getValue()));
-                }
+            readReserved(RESERVED_FILE, reservedByYear);
+        }
+
+        List<MutationJournal.Entry> replayed = journal.open();
+        binSnapshot = openBinarySnapshot();
+
+        // A store.csv (old layout, or just copied in by an import) wins over the year files
+        boolean legacy = Files.exists(CSV_FILE);
+        if (legacy) {
+            CsvLoader.Result r = CsvLoader.read(List.of(CSV_FILE));
+            addLoadErrors(r.errors());
+            Map<Integer, List<BeeUser>> parsed = new HashMap<>();
+            for (BeeUser u : r.users()) {
+                parsed.computeIfAbsent(u.getYear(), k -> new ArrayList<>()).add(u);
+                seedReserved(u);
             }
+            parsed.forEach((y, list) -> names.addAll(putYear(y, YearSegment.of(y, list))));
+            storedYears.addAll(byYear.keySet());
+            recentYears.addAll(byYear.keySet());
+        } else {
+            storedYears.addAll(yearFiles.years());
         }
+
+        // Replay mutations appended since the last compaction, then fold them into the year files
+        for (MutationJournal.Entry e : replayed) {
+            applyEntry(e);
+        }
+        if (legacy) {
+            yearFiles.writeAll(byYear);
+        } else if (!replayed.isEmpty()) {
+            yearFiles.write(byYear, byYear.keySet());
+        }
+        if (legacy || !replayed.isEmpty()) {
+            // the journal also held reservations, so the json has to be current before it is emptied
+            saveReserved(reservedByYear);
+            journal.reset();
+            // only removed once every year is safely in its own file
+            Files.deleteIfExists(CSV_FILE);
+        }
+        initialByYear.putAll(byYear);
+        if (yearFiles.exists()) {
+            // the manifest knows every year's hash, so an unchanged store is not read for this
+            backups.startup(this::getAllUsers, yearFiles.contentHash());
+        }
+
         // Save initial reserved snapshot (deep copy)
-        for (Map.Entry<Integer, Set<Integer>> e : reservedByYear.entrySet()) {
-            initialReservedByYear.put(e.getKey(), new HashSet<>(e.getValue()));
+        initialReservedByYear.putAll(copyReserved(reservedByYear));
+    }
+
+    private BinarySnapshot openBinarySnapshot() {
+        try {
+            return BinarySnapshot.open(BIN_FILE);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Records of a stored year, loaded on first access; null if the year does not exist.
+     * Caller holds the monitor.
+     */
+    private YearSegment peekYear(int year) {
+        YearSegment seg = byYear.get(year);
+        if (seg == null) {
+            if (!storedYears.contains(year)) return null;
+            seg = putYear(year, YearSegment.of(year, loadYear(year)));
+            names.addAll(seg);
+            initialByYear.put(year, seg);
+            recentYears.add(year);
+            evictColdYears(year);
+            publish();
+        } else {
+            recentYears.remove(year);
+            recentYears.add(year);
+        }
+        return seg;
+    }
+
+    /**
+     * Segment of a year to base a change on; the year is created (empty) if it does not exist yet.
+     */
+    private YearSegment segmentFor(int year) {
+        YearSegment seg = peekYear(year);
+        if (seg == null) {
+            storedYears.add(year);
+            recentYears.add(year);
+            return YearSegment.empty(year);
+        }
+        return seg;
+    }
+
+    /**
+     * Publishes a new segment for a loaded year. The name index is the caller's business.
+     */
+    private YearSegment putYear(int year, YearSegment seg) {
+        byYear.put(year, seg);
+        views.put(year, new YearView(year, ++version, seg));
+        allUsers = null;
+        return seg;
+    }
+
+    private YearSegment dropYear(int year) {
+        views.remove(year);
+        allUsers = null;
+        return byYear.remove(year);
+    }
+
+    private void clearYears() {
+        byYear.clear();
+        views.clear();
+        allUsers = null;
+        names.clear();
+    }
+
+    /**
+     * Makes the current years visible to lock-free readers; called once a change is complete.
+     */
+    private void publish() {
+        if (loading) return;
+        readState = new ReadState(version, Map.copyOf(views), Set.copyOf(storedYears));
+    }
+
+    /**
+     * Reads a year from store.bin if its block there matches the year file, otherwise from the CSV.
+     * A year that cannot be read is not treated as empty, since it would then be written back empty.
+     */
+    private List<BeeUser> loadYear(int year) {
+        List<BeeUser> list = null;
+        if (binSnapshot != null && binSnapshot.matches(year, yearFiles.hash(year))) {
+            try {
+                list = binSnapshot.read(year);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+        if (list == null) {
+            try {
+                CsvLoader.Result r = yearFiles.read(year);
+                addLoadErrors(r.errors());
+                list = r.users();
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Greška pri učitavanju godine " + year, ex);
+            }
+        }
+        for (BeeUser u : list) seedReserved(u);
+        return list;
+    }
+
+    /**
+     * Drops the least recently used years beyond MAX_LOADED_YEARS; a year that changed since
+     * the initial snapshot, the current year and the one just loaded always stay.
+     */
+    private void evictColdYears(int justLoaded) {
+        if (MAX_LOADED_YEARS <= 0 || byYear.size() <= MAX_LOADED_YEARS) return;
+        int current = LocalDate.now().getYear();
+        Iterator<Integer> it = recentYears.iterator();
+        while (byYear.size() > MAX_LOADED_YEARS && it.hasNext()) {
+            int y = it.next();
+            if (y == justLoaded || y == current || modifiedYears.contains(y)) continue;
+            it.remove();
+            names.removeAll(dropYear(y));
+            initialByYear.remove(y);
+        }
+    }
+
+    private void seedReserved(BeeUser u) {
+        if (u.getSeqNumber() > 0) reserved(u.getYear()).add(u.getSeqNumber());
+    }
+
+    private void addLoadErrors(List<CsvLoader.RowError> errors) {
+        loadErrors.addAll(errors);
+    }
+
+    /**
+     * Replays a journal record; every operation is idempotent so a record that
+     * was already compacted into its year file can safely be applied again.
+     */
+    private void applyEntry(MutationJournal.Entry e) {
+        if (e.op() == MutationJournal.Op.RESERVE) {
+            reserved(e.range().year()).addRange(e.range().from(), e.range().to());
+            return;
         }
+        BeeUser u = e.user();
+        YearSegment seg = segmentFor(u.getYear());
+        int i = seg.rowOf(u.getId());
+        if (e.op() == MutationJournal.Op.DELETE) {
+            if (i < 0) return;
+            unindex(seg, i);
+            seg = seg.minus(i);
+        } else {
+            seedReserved(u);
+            if (i >= 0) {
+                unindex(seg, i);
+                seg = seg.withRow(i, u);
+            } else {
+                seg = seg.plus(u);
+            }
+            index(u);
+        }
+        putYear(u.getYear(), seg);
+    }
+
+    private void index(BeeUser u) {
+        names.add(u.getFirstName(), u.getLastName(), u.getYear(), u.getId());
     }
 
-    private BeeUser deepCopy(BeeUser u) {
-        BeeUser copy = new BeeUser();
-        copy.setId(u.getId());
-        copy.setFirstName(u.getFirstName());
-        copy.setLastName(u.getLastName());
-        copy.setGender(u.getGender());
-        copy.setBirthDate(u.getBirthDate());
-        copy.setBirthPlace(u.getBirthPlace());
-        copy.setResidenceCity(u.getResidenceCity());
-        copy.setColonies(u.getColonies());
-        copy.setDocNumber(u.getDocNumber());
-        copy.setSeqNumber(u.getSeqNumber());
-        copy.setYear(u.getYear());
-        // <<< dodano
-        copy.setCertificateDate(u.getCertificateDate());
-        return copy;
+    private void unindex(YearSegment seg, int row) {
+        names.remove(seg.firstName(row), seg.lastName(row), seg.year(), seg.id(row));
+    }
+
+    static String[] toRow(BeeUser u) {
+        return new String[]{
+                u.getId(),
+                u.getFirstName(),
+                u.getLastName(),
+                u.getGender(),
+                u.getBirthDate() != null ? u.getBirthDate().format(DF) : "",
+                u.getBirthPlace(),
+                u.getResidenceCity(),
+                String.valueOf(u.getColonies()),
+                u.getDocNumber(),
+                String.valueOf(u.getSeqNumber()),
+                String.valueOf(u.getYear()),
+                u.getCertificateDate() != null ? u.getCertificateDate().format(DF) : ""
+        };
+    }
+
+    static BeeUser fromRow(String[] row) {
+        // Handle certificate date - check if column exists
+        LocalDate cert = null;
+        if (row.length > 11 && row[11] != null && !row[11].isEmpty()) {
+            cert = LocalDate.parse(row[11], DF);
+        }
+        return new BeeUser(row[0], row[1], row[2], StringDictionary.canonical(row[3]), LocalDate.parse(row[4], DF),
+                StringDictionary.canonical(row[5]), StringDictionary.canonical(row[6]),
+                Integer.parseInt(row[7]), row[8], Integer.parseInt(row[9]), Integer.parseInt(row[10]), cert);
+    }
+
+    private SeqAllocator reserved(int year) {
+        return reservedByYear.computeIfAbsent(year, k -> new SeqAllocator());
     }
 
     /**
      * Reserve next sequence for given year (keeps reservedByYear persistent)
      */
     public synchronized int reserveNext(int year) {
-        Set<Integer> set = reservedByYear.computeIfAbsent(year, k -> new HashSet<>());
-        int next = 1;
-        while (set.contains(next)) next++;
-        set.add(next);
-        saveReserved();
-        return next;
-    }
-
-    private void saveReserved() {
-        try (Writer w = Files.newBufferedWriter(RESERVED_FILE)) {
-            Map<String, List<Integer>> out = new HashMap<>();
-            for (Map.Entry<Integer, Set<Integer>> e : reservedByYear.entrySet()) {
-                List<Integer> l = new ArrayList<>(e.getValue());
-                Collections.sort(l);
-                out.put(String.valueOf(e.getKey()), l);
+        return reserveRange(year, 1)[0];
+    }
+
+    /**
+     * Reserves the n lowest free sequence numbers of a year (ascending), e.g. for a bulk rollover.
+     * Only the reserved ranges are appended to the journal; reserved_numbers.json is rewritten on compaction.
+     */
+    public synchronized int[] reserveRange(int year, int n) {
+        peekYear(year); // numbers used by the year's records count as reserved
+        int[] numbers = reserved(year).reserve(n);
+        for (int[] r : SeqAllocator.runs(numbers)) {
+            pendingReservations.add(MutationJournal.Entry.reserve(year, r[0], r[1]));
+        }
+        committer.submit();
+        return numbers;
+    }
+
+    private static Map<Integer, SeqAllocator> copyReserved(Map<Integer, SeqAllocator> reserved) {
+        Map<Integer, SeqAllocator> out = new HashMap<>();
+        for (Map.Entry<Integer, SeqAllocator> e : reserved.entrySet()) out.put(e.getKey(), e.getValue().copy());
+        return out;
+    }
+
+    /**
+     * Reads reserved_numbers.json: per year a list of [from, to] ranges, or (older files) plain numbers.
+     */
+    private static void readReserved(Path file, Map<Integer, SeqAllocator> into) throws IOException {
+        try (Reader r = Files.newBufferedReader(file)) {
+            JsonElement root = JsonParser.parseReader(r);
+            if (root == null || !root.isJsonObject()) return;
+            for (Map.Entry<String, JsonElement> e : root.getAsJsonObject().entrySet()) {
+                SeqAllocator a = into.computeIfAbsent(Integer.parseInt(e.getKey()), k -> new SeqAllocator());
+                for (JsonElement v : e.getValue().getAsJsonArray()) {
+                    if (v.isJsonArray()) {
+                        JsonArray range = v.getAsJsonArray();
+                        a.addRange(range.get(0).getAsInt(), range.get(range.size() - 1).getAsInt());
+                    } else {
+                        a.add(v.getAsInt());
+                    }
+                }
+            }
+        } catch (JsonParseException | IllegalStateException | NumberFormatException ex) {
+            throw new IOException("Neispravan format " + file.getFileName(), ex);
+        }
+    }
+
+    private void saveReserved(Map<Integer, SeqAllocator> reserved) {
+        Path tmp = RESERVED_FILE.resolveSibling(RESERVED_FILE.getFileName() + ".tmp");
+        try (Writer w = Files.newBufferedWriter(tmp)) {
+            Map<String, List<int[]>> out = new TreeMap<>();
+            for (Map.Entry<Integer, SeqAllocator> e : reserved.entrySet()) {
+                if (!e.getValue().isEmpty()) out.put(String.valueOf(e.getKey()), e.getValue().ranges());
             }
             new Gson().toJson(out, w);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return;
+        }
+        try {
+            Files.move(tmp, RESERVED_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException ex) {
             ex.printStackTrace();
         }
     }
 
     /**
-     * Persist store.csv and reserved_numbers.json and create timestamped backup file with 'reason' in filename.
+     * Persist the year files and reserved_numbers.json and create timestamped backup file with 'reason' in filename.
      * Use reason values like: ADD, EDIT, DELETE, CLOSE, IMPORT, IMPORT_REPLACE, STARTUP...
+     * Writes the whole store on the caller (only loaded years whose content changed hit the disk,
+     * years that are not loaded are unchanged), so queued mutations and the journal are superseded.
+     * The reserved numbers and the backup are still written if the year files fail.
+     *
+     * @throws IOException if the year files could not be written; the changes are only in memory
      */
-    private void persistAll(String reason) {
-        try (CSVWriter writer = new CSVWriter(new FileWriter(CSV_FILE.toFile()))) {
-            String[] header = {"id","firstName","lastName","gender","birthDate","birthPlace","residenceCity","colonies","docNumber","seqNumber","year","certificateDate"};
-            writer.writeNext(header);
-            for (List<BeeUser> list : byYear.values()) {
-                for (BeeUser u : list) {
-                    String[] row = {
-                            u.getId(),
-                            u.getFirstName(),
-                            u.getLastName(),
-                            u.getGender(),
-                            u.getBirthDate().format(DF),
-                            u.getBirthPlace(),
-                            u.getResidenceCity(),
-                            String.valueOf(u.getColonies()),
-                            u.getDocNumber(),
-                            String.valueOf(u.getSeqNumber()),
-                            String.valueOf(u.getYear()),
-                            u.getCertificateDate() != null ? u.getCertificateDate().format(DF) : ""
-                    };
-                    writer.writeNext(row);
-                }
+    private void persistAll(String reason) throws IOException {
+        ioLock.lock();
+        try {
+            persistEpoch++;
+            pending.clear();
+            pendingReservations.clear();
+            Set<Integer> years = new HashSet<>(byYear.keySet());
+            for (int y : yearFiles.years()) {
+                if (!storedYears.contains(y)) years.add(y); // removed by an import or restore
             }
-        } catch (IOException ex) {
-            ex.printStackTrace();
+            Long hash = null;
+            IOException failure = null;
+            try {
+                yearFiles.write(byYear, years);
+                journal.reset();
+                dirtyYears.clear();
+                hash = yearFiles.contentHash();
+            } catch (IOException ex) {
+                failure = ex;
+            }
+            saveReserved(reservedByYear);
+            backups.full(reason, this::getAllUsers, hash);
+            if (failure != null) throw failure;
+            committer.allCommitted();
+            lastCommit = LocalDateTime.now();
+            commitError = null;
+        } finally {
+            ioLock.unlock();
         }
-        saveReserved();
-        createBackupFile(reason);
     }
 
-    private void createBackupFile(String reason) {
+    /**
+     * Queue a mutation for the commit thread; the in-memory state is already updated.
+     * before is null for an add, after is null for a delete.
+     */
+    private void submit(MutationJournal.Op op, BeeUser before, BeeUser after, String reason) {
+        pending.add(new Pending(op, before, after, reason));
+        committer.submit();
+        fireCommitListener();
+    }
+
+    /**
+     * Runs on the commit thread: drains everything queued so far under the store lock,
+     * then appends it to the journal with one fsync and writes one backup delta for the group.
+     * Falls back to a full rewrite if the journal cannot be written, and throws if that fails too,
+     * so the executor keeps the batch as not committed.
+     */
+    private void commitPending() {
+        List<Pending> batch;
+        List<MutationJournal.Entry> reservations;
+        Map<Integer, SeqAllocator> reserved = null;
+        Map<Integer, YearSegment> years = null;
+        List<BeeUser> all = null;
+        long epoch;
+        synchronized (this) {
+            if (pending.isEmpty() && pendingReservations.isEmpty()) return;
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            reservations = new ArrayList<>(pendingReservations);
+            pendingReservations.clear();
+            // changed years are always loaded, so the loaded ones are enough for compaction
+            if (journal.size() + batch.size() + reservations.size() >= COMPACT_THRESHOLD) {
+                years = new HashMap<>(byYear); // the segments themselves never change
+                reserved = copyReserved(reservedByYear);
+            }
+            if (!batch.isEmpty() && backups.needsFull()) all = getAllUsers();
+            epoch = persistEpoch;
+        }
+
+        boolean failed = false;
+        ioLock.lock();
         try {
-            String stamp = LocalDateTime.now().format(BK);
-            String fname = String.format("backup_%s_%s.csv", stamp, reason == null ? "AUTO" : reason);
-            Path out = DATA_DIR.resolve(fname);
-            // copy store.csv to backup if exists
-            if (Files.exists(CSV_FILE)) {
-                Files.copy(CSV_FILE, out, StandardCopyOption.REPLACE_EXISTING);
-            } else {
-                // if CSV doesn't exist yet, write an empty CSV with header for consistency
-                try (CSVWriter writer = new CSVWriter(new FileWriter(out.toFile()))) {
-                    writer.writeNext(new String[]{"id","firstName","lastName","gender","birthDate","birthPlace","residenceCity","colonies","docNumber","seqNumber","year","certificateDate"});
+            if (epoch != persistEpoch) return; // a full rewrite already put this batch on disk
+            List<MutationJournal.Entry> entries = new ArrayList<>(batch.size() + reservations.size());
+            List<BackupStore.Change> changes = new ArrayList<>(batch.size());
+            for (Pending p : batch) {
+                BeeUser u = p.after() != null ? p.after() : p.before();
+                entries.add(new MutationJournal.Entry(p.op(), u));
+                changes.add(new BackupStore.Change(p.before(), p.after()));
+                dirtyYears.add(u.getYear());
+            }
+            entries.addAll(reservations);
+            try {
+                journal.appendAll(entries);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                failed = true;
+            }
+            if (!failed) {
+                if (!batch.isEmpty()) backups.deltas(reasonOf(batch), changes, all);
+                if (years != null && journal.size() >= COMPACT_THRESHOLD) {
+                    try {
+                        yearFiles.write(years, dirtyYears);
+                        saveReserved(reserved);
+                        journal.reset();
+                        dirtyYears.clear();
+                    } catch (IOException ex) {
+                        ex.printStackTrace();
+                    }
                 }
             }
-        } catch (Exception ex) {
-            ex.printStackTrace();
+        } finally {
+            ioLock.unlock();
         }
+        if (failed) {
+            try {
+                synchronized (this) {
+                    persistAll(reasonOf(batch));
+                }
+            } catch (IOException ex) {
+                commitError = ex.getMessage() != null ? ex.getMessage() : ex.toString();
+                fireCommitListener();
+                throw new UncheckedIOException(commitError, ex);
+            }
+        } else {
+            lastCommit = LocalDateTime.now(); // an earlier failed batch stays reported until a full rewrite
+        }
+        fireCommitListener();
+    }
+
+    private static String reasonOf(List<Pending> batch) {
+        if (batch.isEmpty()) return "AUTO";
+        String reason = batch.get(0).reason();
+        for (Pending p : batch) {
+            if (!p.reason().equals(reason)) return "BATCH";
+        }
+        return reason;
+    }
+
+    private void fireCommitListener() {
+        Runnable l = commitListener;
+        if (l != null) l.run();
+    }
+
+    /**
+     * Called (from any thread) whenever a change is queued or a commit finishes.
+     */
+    public void setCommitListener(Runnable listener) {
+        this.commitListener = listener;
+    }
+
+    public LocalDateTime getLastCommitTime() {
+        return lastCommit;
+    }
+
+    /**
+     * Why the last commit failed, while its changes are only in memory; null otherwise.
+     */
+    public String getCommitError() {
+        return commitError;
+    }
+
+    public int getPendingCount() {
+        return committer.pendingCount();
+    }
+
+    /**
+     * Blocks until every queued mutation is durably on disk.
+     *
+     * @throws IOException if a commit failed and its changes are only in memory
+     */
+    public void flush() throws IOException {
+        try {
+            committer.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Export every year as one combined CSV (the format replaceDataFiles accepts).
+     * Queued changes are flushed first so reserved_numbers.json on disk matches.
+     */
+    public void exportCsv(Path target) throws IOException {
+        flush();
+        writeCsv(target, getAllUsers());
+    }
+
+    /**
+     * Write the given records as a full CSV. The file is written next to the target
+     * and moved into place so a crash never leaves a half-written store.
+     */
+    static void writeCsv(Path target, Collection<BeeUser> users) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (CSVWriter writer = new CSVWriter(Files.newBufferedWriter(tmp))) {
+            writer.writeNext(HEADER);
+            for (BeeUser u : users) {
+                writer.writeNext(toRow(u));
+            }
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 
     // Public API to force save (used on app close)
-    public synchronized void saveAll() {
-        persistAll("CLOSE");
+    public void saveAll() throws IOException {
+        try {
+            flush();
+        } catch (IOException ex) {
+            ex.printStackTrace(); // the full rewrite below still puts the changes on disk
+        }
+        synchronized (this) {
+            persistAll("CLOSE");
+            try {
+                BinarySnapshot.write(BIN_FILE, byYear, yearFiles.hashes(), binSnapshot);
+                binSnapshot = BinarySnapshot.open(BIN_FILE);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+        flush(); // still failing if the rewrite did not make it either
     }
 
     public synchronized void addUser(BeeUser user) {
-        byYear.computeIfAbsent(user.getYear(), k -> new ArrayList<>()).add(user);
-        persistAll("ADD");
+        putYear(user.getYear(), segmentFor(user.getYear()).plus(user));
+        index(user);
+        publish();
+        modifiedYears.add(user.getYear());
+        submit(MutationJournal.Op.ADD, null, user, "ADD");
     }
 
     public synchronized void updateUser(BeeUser user) {
-        List<BeeUser> list = byYear.getOrDefault(user.getYear(), new ArrayList<>());
-        for (int i = 0; i < list.size(); i++) {
-            if (list.get(i).getId().equals(user.getId())) {
-                list.set(i, user);
-                persistAll("EDIT");
-                return;
-            }
-        }
+        YearSegment seg = peekYear(user.getYear());
+        if (seg == null) return;
+        int i = seg.rowOf(user.getId());
+        if (i < 0) return;
+        BeeUser before = seg.get(i);
+        unindex(seg, i);
+        putYear(user.getYear(), seg.withRow(i, user));
+        index(user);
+        publish();
+        modifiedYears.add(user.getYear());
+        submit(MutationJournal.Op.EDIT, before, user, "EDIT");
     }
 
     public synchronized void deleteUser(BeeUser user) {
-        List<BeeUser> list = byYear.getOrDefault(user.getYear(), new ArrayList<>());
-        list.removeIf(u -> u.getId().equals(user.getId()));
+        YearSegment seg = peekYear(user.getYear());
+        if (seg == null) return;
+        int i = seg.rowOf(user.getId());
+        if (i < 0) return;
+        BeeUser before = seg.get(i);
+        unindex(seg, i);
+        putYear(user.getYear(), seg.minus(i));
+        publish();
+        modifiedYears.add(user.getYear());
         // per requirement: do NOT free reserved seq number unless importing with replace behavior
-        persistAll("DELETE");
+        submit(MutationJournal.Op.DELETE, before, null, "DELETE");
+    }
+
+    /**
+     * Certificate number of a sequence number in a year, e.g. 14-07/25.
+     */
+    public static String docNumber(int year, int seq) {
+        return String.format("14-%02d/%02d", seq, year % 100);
+    }
+
+    /**
+     * Rows a rollover would carry over, and how many of the source year's rows were left out
+     * because toYear already has the name or an earlier row of the source year has it.
+     */
+    public record RolloverPreview(List<BeeUser> rows, int inTargetYear, int duplicates) {}
+
+    /**
+     * Records of fromYear a rollover into toYear would carry over: names toYear already has are
+     * left out, and a name that occurs more than once counts once. In fromYear order.
+     */
+    public synchronized RolloverPreview rolloverCandidates(int fromYear, int toYear) {
+        return rolloverRows(fromYear, toYear, null);
+    }
+
+    /**
+     * Carries the records of fromYear with the given ids into toYear as new records (new id,
+     * the given certificate date, the year's next free numbers), skipping names toYear already has.
+     * The numbers are reserved as one batch, the year is published once and the whole rollover
+     * goes to the journal as a single commit. Returns the records added.
+     */
+    public synchronized List<BeeUser> rollover(int fromYear, int toYear, Collection<String> ids, LocalDate certificateDate) {
+        List<BeeUser> rows = rolloverRows(fromYear, toYear, new HashSet<>(ids)).rows();
+        if (rows.isEmpty()) return rows;
+        int[] seqs = reserveRange(toYear, rows.size());
+        List<BeeUser> added = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            added.add(rows.get(i).withId(UUID.randomUUID().toString())
+                    .withCertificateDate(certificateDate)
+                    .withNumbers(toYear, seqs[i], docNumber(toYear, seqs[i])));
+        }
+        putYear(toYear, segmentFor(toYear).plusAll(added));
+        for (BeeUser u : added) {
+            index(u);
+            pending.add(new Pending(MutationJournal.Op.ADD, null, u, "ROLLOVER"));
+        }
+        publish();
+        modifiedYears.add(toYear);
+        committer.submit();
+        fireCommitListener();
+        return added;
     }
 
-    public List<BeeUser> getForYear(int year) {
-        return new ArrayList<>(byYear.getOrDefault(year, new ArrayList<>()));
+    /**
+     * Rows of fromYear (all, or only the given ids) whose name is in neither toYear nor an earlier
+     * row; a name toYear has counts as in the target year even if it is also repeated.
+     */
+    private RolloverPreview rolloverRows(int fromYear, int toYear, Set<String> ids) {
+        YearSegment from = peekYear(fromYear);
+        if (from == null || fromYear == toYear) return new RolloverPreview(new ArrayList<>(), 0, 0);
+        peekYear(toYear);
+        Set<String> seen = new HashSet<>();
+        List<BeeUser> out = new ArrayList<>();
+        int inTargetYear = 0;
+        int duplicates = 0;
+        for (int i = 0; i < from.size(); i++) {
+            if (ids != null && !ids.contains(from.id(i))) continue;
+            String key = NameIndex.key(from.firstName(i), from.lastName(i));
+            if (!names.inYear(key, toYear).isEmpty()) inTargetYear++;
+            else if (!seen.add(key)) duplicates++;
+            else out.add(from.get(i));
+        }
+        return new RolloverPreview(out, inTargetYear, duplicates);
     }
 
-    public Set<Integer> getReservedForYear(int year) {
-        return reservedByYear.getOrDefault(year, Collections.emptySet());
+    /**
+     * Record with the given id in the given year (loading that year if needed); null if there is none.
+     */
+    public synchronized BeeUser findById(int year, String id) {
+        YearSegment seg = peekYear(year);
+        return seg == null ? null : row(seg, seg.rowOf(id));
     }
 
-    public boolean existsSameName(int year, String firstName, String lastName) {
-        return byYear.getOrDefault(year, Collections.emptyList())
-                .stream()
-                .anyMatch(u -> u.getFirstName().equalsIgnoreCase(firstName.trim()) &&
-                        u.getLastName().equalsIgnoreCase(lastName.trim()));
+    /**
+     * Record with the given id in any year; years that are not loaded yet are loaded (newest first)
+     * only if the id is not found among the loaded ones.
+     */
+    public synchronized BeeUser findById(String id) {
+        for (YearSegment seg : byYear.values()) {
+            int i = seg.rowOf(id);
+            if (i >= 0) return seg.get(i);
+        }
+        if (byYear.size() == storedYears.size()) return null;
+        for (int y : new TreeSet<>(storedYears).descendingSet()) {
+            if (byYear.containsKey(y)) continue;
+            YearSegment seg = peekYear(y);
+            int i = seg.rowOf(id);
+            if (i >= 0) return seg.get(i);
+        }
+        return null;
     }
 
+    private static BeeUser row(YearSegment seg, int i) {
+        return i < 0 ? null : seg.get(i);
+    }
+
+    /**
+     * Replace the store and reserved_numbers.json with external files and reload.
+     * The CSV is copied in as store.csv and split into year files by load().
+     * Pending journal records belong to the old data, so they are discarded.
+     */
+    public synchronized void replaceDataFiles(Path csvFile, Path reservedFile) throws IOException {
+        ioLock.lock();
+        try {
+            Files.copy(csvFile, CSV_FILE, StandardCopyOption.REPLACE_EXISTING);
+            Files.copy(reservedFile, RESERVED_FILE, StandardCopyOption.REPLACE_EXISTING);
+            journal.open();
+            journal.reset();
+            load();
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Records of a year, read-only and without copying; the segment does not change after it is returned.
+     * Safe to call from any thread.
+     */
+    public YearSegment getForYear(int year) {
+        return viewYear(year).users();
+    }
+
+    /**
+     * Records of a year with the version they belong to; a year that does not exist gives an empty view.
+     * Lock-free once the year is loaded.
+     */
+    public YearView viewYear(int year) {
+        ReadState s = readState;
+        YearView v = s.views().get(year);
+        if (v != null) return v;
+        if (s.years().contains(year)) {
+            synchronized (this) {
+                if (peekYear(year) != null) return views.get(year);
+            }
+        }
+        return new YearView(year, 0, YearSegment.empty(year));
+    }
+
+    /**
+     * Changes with every change to the records; equal versions mean nothing changed in between.
+     */
+    public long getVersion() {
+        return readState.version();
+    }
+
+    public synchronized Set<Integer> getReservedForYear(int year) {
+        SeqAllocator a = reservedByYear.get(year);
+        return a == null ? Collections.emptySet() : Collections.unmodifiableSet(a.toSet());
+    }
+
+    /**
+     * Case and diacritics are ignored ("Đulić" matches "dulic").
+     */
+    public synchronized boolean existsSameName(int year, String firstName, String lastName) {
+        return existsSameName(year, firstName, lastName, null);
+    }
+
+    /**
+     * Like existsSameName, but the record with exceptId (the one being edited) does not count.
+     */
+    public synchronized boolean existsSameName(int year, String firstName, String lastName, String exceptId) {
+        if (peekYear(year) == null) return false;
+        for (String id : names.inYear(NameIndex.key(firstName, lastName), year)) {
+            if (!id.equals(exceptId)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Answered from the year index, without loading any year.
+     */
     public Set<Integer> getYears() {
-        Set<Integer> keys = new TreeSet<>(byYear.keySet());
+        Set<Integer> keys = new TreeSet<>(readState.years());
         keys.add(LocalDate.now().getYear());
         return keys;
     }
 
     /**
-     * Vraća deep-copy snapshot stanja pri startu aplikacije.
+     * Vraća stanje pri startu aplikacije. Godine koje su se mijenjale dobijaju nazad svoju početnu
+     * listu (zapisi su nepromjenjivi, pa se ništa ne kopira); ostale su ionako nepromijenjene.
      */
     public synchronized void restoreSnapshot() throws IOException {
-        if (initialSnapshot == null) return;
-        byYear.clear();
-        for (BeeUser u : initialSnapshot) {
-            BeeUser copy = deepCopy(u);
-            byYear.computeIfAbsent(copy.getYear(), k -> new ArrayList<>()).add(copy);
+        for (int y : modifiedYears) {
+            YearSegment initial = initialByYear.get(y);
+            YearSegment current = byYear.get(y);
+            if (current != null) names.removeAll(current);
+            if (initial != null) {
+                names.addAll(putYear(y, initial));
+            } else {
+                // created after startup
+                dropYear(y);
+                storedYears.remove(y);
+                recentYears.remove(y);
+            }
         }
+        modifiedYears.clear();
+        publish();
         // restore reserved numbers to initial snapshot (deep copy)
         reservedByYear.clear();
-        for (Map.Entry<Integer, Set<Integer>> e : initialReservedByYear.entrySet()) {
-            reservedByYear.put(e.getKey(), new HashSet<>(e.getValue()));
-        }
+        reservedByYear.putAll(copyReserved(initialReservedByYear));
         persistAll("RESTORE_STARTUP");
     }
 
+    /**
+     * Every record of every year (read-only, by year); loads the years that are not in memory yet.
+     * The list only strings the year segments together, records are made as they are read;
+     * it is built once and reused until some year changes.
+     */
     public List<BeeUser> getAllUsers() {
-        List<BeeUser> all = new ArrayList<>();
-        for (List<BeeUser> l : byYear.values()) all.addAll(l);
-        return all;
-    }
-
-    public BeeUser getLatestByNameBefore(String firstName, String lastName, int beforeYear) {
-        BeeUser best = null;
-        for (BeeUser u : getAllUsers()) {
-            if (u.getFirstName().equalsIgnoreCase(firstName.trim()) &&
-                    u.getLastName().equalsIgnoreCase(lastName.trim()) &&
-                    u.getYear() < beforeYear) {
-                if (best == null || u.getYear() > best.getYear()) {
-                    best = u;
-                }
+        List<BeeUser> all = allUsers;
+        if (all != null) return all;
+        synchronized (this) {
+            if (allUsers != null) return allUsers;
+            all = YearSegment.concat(new ArrayList<>(allSegments().values()));
+            allUsers = all;
+            return all;
+        }
+    }
+
+    /**
+     * The segment of every stored year, by year; loads the years that are not in memory yet.
+     */
+    private synchronized SortedMap<Integer, YearSegment> allSegments() {
+        SortedMap<Integer, YearSegment> out = new TreeMap<>();
+        for (int y : new TreeSet<>(storedYears)) {
+            YearSegment seg = peekYear(y);
+            if (seg != null) out.put(y, seg);
+        }
+        return out;
+    }
+
+    /**
+     * Streams what restoring the backup would change in the current store: ADDED is only in the
+     * backup, REMOVED only in the store, MODIFIED has the store's record as before.
+     * A full backup is read row by row; a delta is materialized through its chain first.
+     */
+    public void diffWithBackup(Path backup, Consumer<SnapshotDiff.Change> out) throws IOException {
+        SnapshotDiff.diff(allSegments(), backupRecords(backup), out);
+    }
+
+    /**
+     * Streams the changes from an older backup to a newer one.
+     */
+    public void diffBackups(Path older, Path newer, Consumer<SnapshotDiff.Change> out) throws IOException {
+        SnapshotDiff.diff(SnapshotDiff.segments(readCsv(older)), backupRecords(newer), out);
+    }
+
+    /**
+     * The backup catalog, newest first; answered without reading the data folder.
+     */
+    public List<BackupInfo> getBackups() {
+        return backups.catalog();
+    }
+
+    /**
+     * File of a catalogued backup (plain or gzipped); null if it no longer exists.
+     */
+    public Path backupFile(BackupInfo backup) {
+        return backups.resolve(backup.name());
+    }
+
+    /**
+     * Opens a backup for browsing a year at a time (see SnapshotReader); the store is not changed.
+     */
+    public SnapshotReader openSnapshot(Path file) throws IOException {
+        if (BackupStore.isDelta(file)) return SnapshotReader.of(file, readCsv(file));
+        return SnapshotReader.index(file);
+    }
+
+    private SnapshotDiff.RecordSource backupRecords(Path file) {
+        if (BackupStore.isDelta(file)) return action -> readCsv(file).forEach(action);
+        return action -> backups.forEachRecord(file, action);
+    }
+
+    /**
+     * Record with the same name (as existsSameName compares it) in the newest earlier year.
+     * A lookup in the name index once every year is loaded; before that the earlier years that are
+     * not loaded yet are loaded newest first, down to the first match.
+     */
+    public synchronized BeeUser getLatestByNameBefore(String firstName, String lastName, int beforeYear) {
+        String key = NameIndex.key(firstName, lastName);
+        Map.Entry<Integer, List<String>> hit = names.latestBefore(key, beforeYear);
+        if (byYear.size() < storedYears.size()) {
+            int from = hit == null ? Integer.MIN_VALUE : hit.getKey();
+            for (int y : new TreeSet<>(storedYears).subSet(from, false, beforeYear, false).descendingSet()) {
+                if (byYear.containsKey(y)) continue;
+                YearSegment seg = peekYear(y);
+                List<String> found = names.inYear(key, y);
+                if (!found.isEmpty()) return row(seg, seg.rowOf(found.get(0)));
             }
         }
-        return best;
+        if (hit == null) return null;
+        YearSegment seg = byYear.get(hit.getKey());
+        return row(seg, seg.rowOf(hit.getValue().get(0)));
     }
 
     /**
      * Parsira arbitrarni CSV u isti model i vraća listu BeeUser (ne mijenja trenutni store).
+     * Delta backup se materijalizuje preko svog lanca (baza + sve delte do njega).
      */
     public List<BeeUser> readCsv(Path file) throws IOException {
-        List<BeeUser> all = new ArrayList<>();
-        if (!Files.exists(file)) return all;
-        try (CSVReader reader = new CSVReader(new FileReader(file.toFile()))) {
-            String[] header = reader.readNext();
-            String[] row;
-            while ((row = reader.readNext()) != null) {
-                try {
-                    BeeUser u = new BeeUser();
-                    u.setId(row[0]);
-                    u.setFirstName(row[1]);
-                    u.setLastName(row[2]);
-                    u.setGender(row[3]);
-                    u.setBirthDate(LocalDate.parse(row[4], DF));
-                    u.setBirthPlace(row[5]);
-                    u.setResidenceCity(row[6]);
-                    u.setColonies(Integer.parseInt(row[7]));
-                    u.setDocNumber(row[8]);
-                    u.setSeqNumber(Integer.parseInt(row[9]));
-                    u.setYear(Integer.parseInt(row[10]));
-                    all.add(u);
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                }
-            }
-        } catch (com.opencsv.exceptions.CsvValidationException e) {
-            throw new IOException("CSV validation error", e);
+        if (!Files.exists(file)) return new ArrayList<>();
+        if (BackupStore.isDelta(file)) return backups.materialize(file, this::readPlainCsv);
+        return readPlainCsv(file);
+    }
+
+    private List<BeeUser> readPlainCsv(Path file) throws IOException {
+        CsvLoader.Result r = CsvLoader.read(List.of(file));
+        r.errors().forEach(CsvLoader::logSkipped);
+        return r.users();
+    }
+
+    /**
+     * Redovi koji nisu mogli biti učitani pri zadnjem load() (prazno ako je sve u redu).
+     */
+    public synchronized List<String> getLoadErrors() {
+        List<String> out = new ArrayList<>();
+        for (CsvLoader.RowError e : loadErrors) out.add(e.toString());
+        return out;
+    }
+
+    /**
+     * The parsed records become the whole store; every year is in memory afterwards.
+     */
+    private void replaceAllYears(List<BeeUser> parsed) {
+        clearYears();
+        Map<Integer, List<BeeUser>> years = new HashMap<>();
+        for (BeeUser u : parsed) {
+            years.computeIfAbsent(u.getYear(), k -> new ArrayList<>()).add(u);
         }
-        return all;
+        years.forEach((y, list) -> names.addAll(putYear(y, YearSegment.of(y, list))));
+        storedYears.clear();
+        storedYears.addAll(byYear.keySet());
+        recentYears.clear();
+        recentYears.addAll(byYear.keySet());
+        modifiedYears.clear();
+        publish();
     }
 
     /**
@@ -317,31 +1060,26 @@ public class DataStore {
      */
     public synchronized void importSnapshotAsMain(Path file) throws IOException {
         List<BeeUser> parsed = readCsv(file);
-        Map<Integer, Set<Integer>> parsedReserved = new HashMap<>();
+        Map<Integer, SeqAllocator> parsedReserved = new HashMap<>();
         for (BeeUser u : parsed) {
             if (u.getSeqNumber() > 0) {
-                parsedReserved.computeIfAbsent(u.getYear(), k -> new HashSet<>()).add(u.getSeqNumber());
+                parsedReserved.computeIfAbsent(u.getYear(), k -> new SeqAllocator()).add(u.getSeqNumber());
             }
         }
 
         // set byYear from parsed
-        byYear.clear();
-        for (BeeUser u : parsed) {
-            byYear.computeIfAbsent(u.getYear(), k -> new ArrayList<>()).add(u);
-        }
+        replaceAllYears(parsed);
 
         // union reserved numbers with current reservedByYear
-        for (Map.Entry<Integer, Set<Integer>> e : parsedReserved.entrySet()) {
-            Set<Integer> target = reservedByYear.computeIfAbsent(e.getKey(), k -> new HashSet<>());
-            target.addAll(e.getValue());
+        for (Map.Entry<Integer, SeqAllocator> e : parsedReserved.entrySet()) {
+            for (int[] r : e.getValue().ranges()) reserved(e.getKey()).addRange(r[0], r[1]);
         }
 
         // update initial snapshot (so restoreSnapshot returns here)
-        initialSnapshot = parsed.stream().map(this::deepCopy).collect(Collectors.toList());
+        initialByYear.clear();
+        initialByYear.putAll(byYear);
         initialReservedByYear.clear();
-        for (Map.Entry<Integer, Set<Integer>> e : reservedByYear.entrySet()) {
-            initialReservedByYear.put(e.getKey(), new HashSet<>(e.getValue()));
-        }
+        initialReservedByYear.putAll(copyReserved(reservedByYear));
 
         persistAll("IMPORT");
     }
@@ -350,37 +1088,31 @@ public class DataStore {
      * Uvozi CSV snapshot kao novi glavni snapshot **(novo ponašanje - REPLACE reserved)**:
      * - postavlja byYear iz snapshot-a
      * - **zamjenjuje** trenutne reservedByYear s onim iz snapshot-a (tj. brišu se rezervacije koje su nastale kasnije)
-     * - ažurira initialSnapshot i initialReservedByYear tako da "Restore startup" vraća ovdje
+     * - ažurira početni snapshot (initialByYear) i initialReservedByYear tako da "Restore startup" vraća ovdje
      *
      * Posljedica: nakon uvoza, novi dodani pčelar će dobiti sljedeći broj nakon najvećeg seq-a prisutnog u tom snapshotu.
      */
     public synchronized void importSnapshotAsMainReplaceReserved(Path file) throws IOException {
         List<BeeUser> parsed = readCsv(file);
-        Map<Integer, Set<Integer>> parsedReserved = new HashMap<>();
+        Map<Integer, SeqAllocator> parsedReserved = new HashMap<>();
         for (BeeUser u : parsed) {
             if (u.getSeqNumber() > 0) {
-                parsedReserved.computeIfAbsent(u.getYear(), k -> new HashSet<>()).add(u.getSeqNumber());
+                parsedReserved.computeIfAbsent(u.getYear(), k -> new SeqAllocator()).add(u.getSeqNumber());
             }
         }
 
         // set byYear from parsed
-        byYear.clear();
-        for (BeeUser u : parsed) {
-            byYear.computeIfAbsent(u.getYear(), k -> new ArrayList<>()).add(u);
-        }
+        replaceAllYears(parsed);
 
         // REPLACE reservedByYear with parsedReserved (this frees numbers that are not in parsedReserved)
         reservedByYear.clear();
-        for (Map.Entry<Integer, Set<Integer>> e : parsedReserved.entrySet()) {
-            reservedByYear.put(e.getKey(), new HashSet<>(e.getValue()));
-        }
+        reservedByYear.putAll(parsedReserved);
 
         // update initial snapshot and initial reserved
-        initialSnapshot = parsed.stream().map(this::deepCopy).collect(Collectors.toList());
+        initialByYear.clear();
+        initialByYear.putAll(byYear);
         initialReservedByYear.clear();
-        for (Map.Entry<Integer, Set<Integer>> e : reservedByYear.entrySet()) {
-            initialReservedByYear.put(e.getKey(), new HashSet<>(e.getValue()));
-        }
+        initialReservedByYear.putAll(copyReserved(reservedByYear));
 
         persistAll("IMPORT_REPLACE");
     }
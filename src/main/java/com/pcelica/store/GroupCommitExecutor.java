@@ -0,0 +1,102 @@
+package com.pcelica.store;
+
+import java.io.IOException;
+
+/**
+ * Dedicated persistence thread with group commit. Callers only signal that something is
+ * pending; the thread runs the commit once the oldest pending change is maxDelayMs old or
+ * maxBatch changes have piled up, so a burst of mutations costs a single commit.
+ */
+class GroupCommitExecutor {
+    private final Runnable commit;
+    private final long maxDelayMs;
+    private final int maxBatch;
+    private final Thread thread;
+
+    private int pending;
+    private long firstPendingAt;
+    private long submitted;
+    private long committed;
+    private boolean flushRequested;
+    // a commit that threw; its batch is not on disk until allCommitted()
+    private RuntimeException failure;
+
+    GroupCommitExecutor(String name, long maxDelayMs, int maxBatch, Runnable commit) {
+        this.commit = commit;
+        this.maxDelayMs = Math.max(0, maxDelayMs);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.thread = new Thread(this::loop, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    synchronized void submit() {
+        if (pending == 0) firstPendingAt = System.currentTimeMillis();
+        pending++;
+        submitted++;
+        notifyAll();
+    }
+
+    synchronized int pendingCount() {
+        return pending;
+    }
+
+    /**
+     * Blocks until everything submitted so far has been committed.
+     * Must not be called while holding a lock the commit itself needs.
+     *
+     * @throws IOException if a commit failed, so some change is not on disk
+     */
+    synchronized void flush() throws InterruptedException, IOException {
+        if (Thread.currentThread() == thread) return;
+        long target = submitted;
+        flushRequested = true;
+        notifyAll();
+        while (committed < target && failure == null) wait();
+        if (failure != null) throw new IOException("Promjene nisu snimljene: " + failure.getMessage(), failure);
+    }
+
+    /**
+     * Everything submitted so far is on disk by other means (a full rewrite); clears a failed commit.
+     */
+    synchronized void allCommitted() {
+        committed = submitted;
+        failure = null;
+        notifyAll();
+    }
+
+    private void loop() {
+        while (true) {
+            long target;
+            synchronized (this) {
+                try {
+                    while (pending == 0) wait();
+                    long now;
+                    while (!flushRequested && pending < maxBatch
+                            && (now = System.currentTimeMillis()) - firstPendingAt < maxDelayMs) {
+                        wait(maxDelayMs - (now - firstPendingAt));
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                target = submitted;
+                pending = 0;
+                flushRequested = false;
+            }
+            try {
+                commit.run();
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+                synchronized (this) {
+                    failure = ex;
+                    notifyAll();
+                }
+                continue;
+            }
+            synchronized (this) {
+                if (committed < target) committed = target;
+                notifyAll();
+            }
+        }
+    }
+}
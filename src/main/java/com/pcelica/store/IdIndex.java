@@ -0,0 +1,126 @@
+package com.pcelica.store;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Row of a record by id for one {@link YearSegment}: an open-addressing table of ints (row + 1,
+ * 0 for a free slot) probed linearly from the id's String.hashCode, which the String caches, so
+ * a lookup allocates nothing.
+ *
+ * Immutable like the segment. The segment's change methods derive the new segment's table from
+ * the old one: appending inserts the new rows, replacing a row with the same id shares the table,
+ * removing a row deletes its slot and renumbers the rows after it. Only growing past half full
+ * rebuilds the table. An id that is on several rows maps to the first one; while a table has
+ * such duplicates, removing or re-keying a row rebuilds it so the next row with the id takes over.
+ */
+final class IdIndex {
+    private static final IdIndex EMPTY = new IdIndex(new int[8], false);
+
+    private final int[] slots;
+    private final int mask;
+    // set while the table is being filled, before it is published
+    private boolean duplicates;
+
+    private IdIndex(int[] slots, boolean duplicates) {
+        this.slots = slots;
+        this.mask = slots.length - 1;
+        this.duplicates = duplicates;
+    }
+
+    /** Table for rows [0, n) of ids. */
+    static IdIndex build(String[] ids, int n) {
+        if (n == 0) return EMPTY;
+        IdIndex t = new IdIndex(new int[capacity(n)], false);
+        for (int i = 0; i < n; i++) t.insert(ids, i);
+        return t;
+    }
+
+    private static int capacity(int n) {
+        int cap = 8;
+        while (cap < n * 2) cap <<= 1;
+        return cap;
+    }
+
+    /** Row of id in ids, the array of the segment this table belongs to; -1 if there is none. */
+    int rowOf(String[] ids, String id) {
+        if (id == null) return -1;
+        for (int i = home(id); ; i = (i + 1) & mask) {
+            int v = slots[i];
+            if (v == 0) return -1;
+            if (id.equals(ids[v - 1])) return v - 1;
+        }
+    }
+
+    /** Table for the segment ids of size n whose rows [from, n) were appended to this one's. */
+    IdIndex plus(String[] ids, int from, int n) {
+        if (n * 2 > slots.length) return build(ids, n);
+        IdIndex t = copy();
+        for (int i = from; i < n; i++) t.insert(ids, i);
+        return t;
+    }
+
+    /** Table after row was re-filled: oldIds before, newIds after (same size). */
+    IdIndex replaced(String[] oldIds, String[] newIds, int row, int n) {
+        if (Objects.equals(oldIds[row], newIds[row])) return this;
+        if (duplicates) return build(newIds, n);
+        IdIndex t = copy();
+        t.remove(oldIds, row);
+        t.insert(newIds, row);
+        return t;
+    }
+
+    /** Table after row was removed: oldIds before, newIds after (one row shorter, n rows). */
+    IdIndex minus(String[] oldIds, String[] newIds, int row, int n) {
+        if (duplicates) return build(newIds, n);
+        IdIndex t = copy();
+        t.remove(oldIds, row);
+        int[] s = t.slots;
+        for (int i = 0; i < s.length; i++) {
+            if (s[i] > row + 1) s[i]--;
+        }
+        return t;
+    }
+
+    private IdIndex copy() {
+        return new IdIndex(Arrays.copyOf(slots, slots.length), duplicates);
+    }
+
+    private int home(String id) {
+        int h = id.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void insert(String[] ids, int row) {
+        String id = ids[row];
+        if (id == null) return;
+        int i = home(id);
+        while (slots[i] != 0) {
+            if (id.equals(ids[slots[i] - 1])) {
+                duplicates = true;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        slots[i] = row + 1;
+    }
+
+    /** Frees the slot of row, moving later entries of its probe run back so none gets unreachable. */
+    private void remove(String[] ids, int row) {
+        String id = ids[row];
+        if (id == null) return;
+        int i = home(id);
+        while (slots[i] != row + 1) {
+            if (slots[i] == 0) return;
+            i = (i + 1) & mask;
+        }
+        for (int j = (i + 1) & mask; slots[j] != 0; j = (j + 1) & mask) {
+            int k = home(ids[slots[j] - 1]);
+            // an entry whose home lies cyclically in (i, j] is still reachable where it is
+            if (i <= j ? (i < k && k <= j) : (i < k || k <= j)) continue;
+            slots[i] = slots[j];
+            i = j;
+        }
+        slots[i] = 0;
+    }
+}
@@ -0,0 +1,197 @@
+package com.pcelica.store;
+
+import com.pcelica.model.BeeUser;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import static com.pcelica.store.StringDictionary.canonical;
+
+/**
+ * Append-only mutation journal (data/journal.log): record changes and reserved number ranges.
+ * Each record is framed as [int length][int crc32][payload] and fsync'd on append,
+ * so a crash can leave at most one torn record at the tail, which is cut off on open.
+ */
+class MutationJournal implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(MutationJournal.class.getName());
+
+    enum Op { ADD, EDIT, DELETE, RESERVE }
+
+    /** RESERVE entries carry a range of reserved sequence numbers instead of a user. */
+    record Entry(Op op, BeeUser user, Range range) {
+        Entry(Op op, BeeUser user) {
+            this(op, user, null);
+        }
+
+        static Entry reserve(int year, int from, int to) {
+            return new Entry(Op.RESERVE, null, new Range(year, from, to));
+        }
+    }
+
+    record Range(int year, int from, int to) {}
+
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_PAYLOAD = 1 << 20;
+
+    private final Path file;
+    private FileChannel channel;
+    private int entryCount;
+
+    MutationJournal(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the journal, returns every valid record and truncates a torn tail if present.
+     */
+    synchronized List<Entry> open() throws IOException {
+        close();
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        List<Entry> entries = new ArrayList<>();
+        long size = channel.size();
+        long pos = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (pos + HEADER_BYTES <= size) {
+            header.clear();
+            channel.read(header, pos);
+            header.flip();
+            int len = header.getInt();
+            int crc = header.getInt();
+            if (len <= 0 || len > MAX_PAYLOAD || pos + HEADER_BYTES + len > size) break;
+            ByteBuffer payload = ByteBuffer.allocate(len);
+            channel.read(payload, pos + HEADER_BYTES);
+            if (checksum(payload.array()) != crc) break;
+            try {
+                entries.add(decode(payload.array()));
+            } catch (IOException ex) {
+                break;
+            }
+            pos += HEADER_BYTES + len;
+        }
+        if (pos < size) {
+            LOGGER.log(Level.WARNING, "Journal: truncated " + (size - pos) + " bytes of a torn record");
+            channel.truncate(pos);
+            channel.force(true);
+        }
+        channel.position(pos);
+        entryCount = entries.size();
+        return entries;
+    }
+
+    /**
+     * Appends a group of records with a single write and a single fsync.
+     */
+    synchronized void appendAll(List<Entry> entries) throws IOException {
+        if (entries.isEmpty()) return;
+        ByteArrayOutputStream group = new ByteArrayOutputStream(256 * entries.size());
+        for (Entry e : entries) {
+            byte[] payload = encode(e);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(payload.length).putInt(checksum(payload));
+            group.write(header.array());
+            group.write(payload);
+        }
+        ByteBuffer buf = ByteBuffer.wrap(group.toByteArray());
+        while (buf.hasRemaining()) channel.write(buf);
+        channel.force(false);
+        entryCount += entries.size();
+    }
+
+    /**
+     * Empties the journal once its records have been compacted into the year files.
+     */
+    synchronized void reset() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+        entryCount = 0;
+    }
+
+    synchronized int size() {
+        return entryCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private static int checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(Entry e) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(e.op().ordinal());
+            if (e.op() == Op.RESERVE) {
+                out.writeInt(e.range().year());
+                out.writeInt(e.range().from());
+                out.writeInt(e.range().to());
+            } else {
+                writeUser(out, e.user());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeUser(DataOutputStream out, BeeUser u) throws IOException {
+        writeString(out, u.getId());
+        writeString(out, u.getFirstName());
+        writeString(out, u.getLastName());
+        writeString(out, u.getGender());
+        writeDate(out, u.getBirthDate());
+        writeString(out, u.getBirthPlace());
+        writeString(out, u.getResidenceCity());
+        out.writeInt(u.getColonies());
+        writeString(out, u.getDocNumber());
+        out.writeInt(u.getSeqNumber());
+        out.writeInt(u.getYear());
+        writeDate(out, u.getCertificateDate());
+    }
+
+    private static Entry decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            int opIdx = in.readUnsignedByte();
+            if (opIdx >= Op.values().length) throw new IOException("Nepoznata operacija u dnevniku: " + opIdx);
+            if (Op.values()[opIdx] == Op.RESERVE) return Entry.reserve(in.readInt(), in.readInt(), in.readInt());
+            // arguments are evaluated left to right, i.e. in the order writeUser wrote them
+            BeeUser u = new BeeUser(readString(in), readString(in), readString(in), canonical(readString(in)),
+                    readDate(in), canonical(readString(in)), canonical(readString(in)), in.readInt(),
+                    readString(in), in.readInt(), in.readInt(), readDate(in));
+            return new Entry(Op.values()[opIdx], u);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate d) throws IOException {
+        out.writeLong(d == null ? Long.MIN_VALUE : d.toEpochDay());
+    }
+
+    private static LocalDate readDate(DataInputStream in) throws IOException {
+        long v = in.readLong();
+        return v == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(v);
+    }
+}
@@ -0,0 +1,98 @@
+package com.pcelica.store;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * Record ids of the loaded years by normalized name (first + last name, case and diacritics folded),
+ * each name keyed to its ids per year, sorted by year. Kept in step with byYear by DataStore.
+ */
+class NameIndex {
+    private final Map<String, TreeMap<Integer, List<String>>> byName = new HashMap<>();
+
+    /**
+     * "Šaćir  Đulić" and "sacir dulic" give the same key.
+     */
+    static String key(String firstName, String lastName) {
+        StringBuilder sb = new StringBuilder(32);
+        fold(sb, firstName);
+        sb.append('\u001f');
+        fold(sb, lastName);
+        return sb.toString();
+    }
+
+    private static void fold(StringBuilder sb, String s) {
+        if (s == null) return;
+        s = s.trim();
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0x7F) {
+                s = Normalizer.normalize(s, Normalizer.Form.NFD);
+                break;
+            }
+        }
+        boolean space = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space) {
+                sb.append(' ');
+                space = false;
+            }
+            // đ has no decomposition
+            if (c == 'đ' || c == 'Đ') c = 'd';
+            sb.append(Character.toLowerCase(c));
+        }
+    }
+
+    void add(String firstName, String lastName, int year, String id) {
+        byName.computeIfAbsent(key(firstName, lastName), k -> new TreeMap<>())
+                .computeIfAbsent(year, k -> new ArrayList<>(1))
+                .add(id);
+    }
+
+    void remove(String firstName, String lastName, int year, String id) {
+        String key = key(firstName, lastName);
+        TreeMap<Integer, List<String>> years = byName.get(key);
+        if (years == null) return;
+        List<String> ids = years.get(year);
+        if (ids == null) return;
+        ids.remove(id);
+        if (ids.isEmpty()) {
+            years.remove(year);
+            if (years.isEmpty()) byName.remove(key);
+        }
+    }
+
+    void addAll(YearSegment s) {
+        for (int i = 0; i < s.size(); i++) add(s.firstName(i), s.lastName(i), s.year(), s.id(i));
+    }
+
+    void removeAll(YearSegment s) {
+        for (int i = 0; i < s.size(); i++) remove(s.firstName(i), s.lastName(i), s.year(), s.id(i));
+    }
+
+    void clear() {
+        byName.clear();
+    }
+
+    /**
+     * Ids of the records with the given key in one year (empty if none).
+     */
+    List<String> inYear(String key, int year) {
+        TreeMap<Integer, List<String>> years = byName.get(key);
+        List<String> ids = years == null ? null : years.get(year);
+        return ids == null ? Collections.emptyList() : ids;
+    }
+
+    /**
+     * Newest indexed year before beforeYear with the given key, with the ids found there; null if none.
+     */
+    Map.Entry<Integer, List<String>> latestBefore(String key, int beforeYear) {
+        TreeMap<Integer, List<String>> years = byName.get(key);
+        return years == null ? null : years.lowerEntry(beforeYear);
+    }
+}
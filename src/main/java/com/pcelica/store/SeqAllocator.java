@@ -0,0 +1,90 @@
+package com.pcelica.store;
+
+import java.util.*;
+
+/**
+ * Reserved sequence numbers of one year: a BitSet plus a cursor at the lowest free number,
+ * so handing out the next number is O(1) amortized. Numbers start at 1.
+ */
+class SeqAllocator {
+    private final BitSet used = new BitSet();
+    private int nextFree = 1;
+
+    void add(int n) {
+        if (n <= 0) return;
+        used.set(n);
+        if (n == nextFree) nextFree = used.nextClearBit(n + 1);
+    }
+
+    void addRange(int from, int to) {
+        from = Math.max(from, 1);
+        if (to < from) return;
+        used.set(from, to + 1);
+        if (from <= nextFree && nextFree <= to) nextFree = used.nextClearBit(to + 1);
+    }
+
+    boolean contains(int n) {
+        return n > 0 && used.get(n);
+    }
+
+    int reserveNext() {
+        int n = nextFree;
+        used.set(n);
+        nextFree = used.nextClearBit(n + 1);
+        return n;
+    }
+
+    /**
+     * Reserves the count lowest free numbers (ascending).
+     */
+    int[] reserve(int count) {
+        int[] out = new int[count];
+        for (int i = 0; i < count; i++) out[i] = reserveNext();
+        return out;
+    }
+
+    boolean isEmpty() {
+        return used.isEmpty();
+    }
+
+    Set<Integer> toSet() {
+        Set<Integer> out = new TreeSet<>();
+        for (int n = used.nextSetBit(1); n >= 0; n = used.nextSetBit(n + 1)) out.add(n);
+        return out;
+    }
+
+    /**
+     * Reserved numbers as [from, to] runs, ascending.
+     */
+    List<int[]> ranges() {
+        List<int[]> out = new ArrayList<>();
+        int from = used.nextSetBit(1);
+        while (from >= 0) {
+            int to = used.nextClearBit(from) - 1;
+            out.add(new int[]{from, to});
+            from = used.nextSetBit(to + 1);
+        }
+        return out;
+    }
+
+    SeqAllocator copy() {
+        SeqAllocator c = new SeqAllocator();
+        c.used.or(used);
+        c.nextFree = nextFree;
+        return c;
+    }
+
+    /**
+     * Splits ascending numbers into [from, to] runs.
+     */
+    static List<int[]> runs(int[] numbers) {
+        List<int[]> out = new ArrayList<>();
+        for (int i = 0; i < numbers.length; ) {
+            int j = i;
+            while (j + 1 < numbers.length && numbers[j + 1] == numbers[j] + 1) j++;
+            out.add(new int[]{numbers[i], numbers[j]});
+            i = j + 1;
+        }
+        return out;
+    }
+}
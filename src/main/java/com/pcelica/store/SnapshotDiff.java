@@ -0,0 +1,138 @@
+package com.pcelica.store;
+
+import com.pcelica.model.BeeUser;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Differences between two states of the store, joined by record id.
+ *
+ * The older state ("from") is the build side and is held as year segments, so their row-by-id
+ * maps are the join tables and the live store needs no copy at all. The newer state ("to") is only
+ * iterated once, so a backup can be streamed from its file. Changes are handed to the consumer as
+ * they are found: added and modified ones in the order of "to", removed ones at the end.
+ */
+public final class SnapshotDiff {
+    public enum Kind { ADDED, REMOVED, MODIFIED }
+
+    private static final DateTimeFormatter DF = DateTimeFormatter.ofPattern("dd.MM.yyyy.");
+
+    /** One field of a modified record, as shown in the table. */
+    public record FieldChange(String field, String before, String after) {}
+
+    /** before is null for ADDED, after is null for REMOVED, fields is empty unless MODIFIED. */
+    public record Change(Kind kind, BeeUser before, BeeUser after, List<FieldChange> fields) {
+        public BeeUser user() {
+            return after != null ? after : before;
+        }
+    }
+
+    private final Map<Integer, YearSegment> from;
+    // rows of "from" that were matched, per year
+    private final Map<Integer, BitSet> matched = new HashMap<>();
+
+    private SnapshotDiff(Map<Integer, YearSegment> from) {
+        this.from = from;
+    }
+
+    /** The "to" side: hands its records over one at a time, e.g. while reading a file. */
+    interface RecordSource {
+        void forEach(Consumer<BeeUser> action) throws IOException;
+    }
+
+    /**
+     * Streams the changes from one state to the other. A record whose year differs between
+     * the states is reported as removed from one year and added to the other.
+     */
+    static void diff(Map<Integer, YearSegment> from, RecordSource to, Consumer<Change> out) throws IOException {
+        SnapshotDiff d = new SnapshotDiff(from);
+        to.forEach(u -> d.probe(u, out));
+        d.drainRemoved(out);
+    }
+
+    /**
+     * Groups records into year segments, to be used as the "from" side.
+     */
+    static Map<Integer, YearSegment> segments(Collection<BeeUser> users) {
+        Map<Integer, List<BeeUser>> byYear = new HashMap<>();
+        for (BeeUser u : users) byYear.computeIfAbsent(u.getYear(), k -> new ArrayList<>()).add(u);
+        Map<Integer, YearSegment> out = new HashMap<>();
+        byYear.forEach((y, list) -> out.put(y, YearSegment.of(y, list)));
+        return out;
+    }
+
+    private void probe(BeeUser u, Consumer<Change> out) {
+        YearSegment seg = from.get(u.getYear());
+        int row = seg == null ? -1 : seg.rowOf(u.getId());
+        if (row < 0) {
+            out.accept(new Change(Kind.ADDED, null, u, List.of()));
+            return;
+        }
+        BitSet seen = matched.computeIfAbsent(u.getYear(), k -> new BitSet(seg.size()));
+        if (seen.get(row)) return; // the same id twice in "to"; the first one counts
+        seen.set(row);
+        List<FieldChange> fields = compare(seg, row, u);
+        if (!fields.isEmpty()) out.accept(new Change(Kind.MODIFIED, seg.get(row), u, fields));
+    }
+
+    private void drainRemoved(Consumer<Change> out) {
+        for (YearSegment seg : new TreeMap<>(from).values()) {
+            BitSet seen = matched.getOrDefault(seg.year(), new BitSet());
+            for (int i = seen.nextClearBit(0); i < seg.size(); i = seen.nextClearBit(i + 1)) {
+                out.accept(new Change(Kind.REMOVED, seg.get(i), null, List.of()));
+            }
+        }
+    }
+
+    /**
+     * Fields of u that differ from the row, read from the columns so an unchanged record costs no object.
+     */
+    private static List<FieldChange> compare(YearSegment seg, int row, BeeUser u) {
+        List<FieldChange> out = null;
+        out = field(out, "Ime", seg.firstName(row), u.getFirstName());
+        out = field(out, "Prezime", seg.lastName(row), u.getLastName());
+        out = field(out, "Spol", seg.gender(row), u.getGender());
+        if (seg.intValue(YearSegment.IntColumn.BIRTH_DAY, row) != YearSegment.epochDay(u.getBirthDate())) {
+            out = add(out, "Datum rođenja", text(seg.birthDate(row)), text(u.getBirthDate()));
+        }
+        out = field(out, "Mjesto rođenja", seg.birthPlace(row), u.getBirthPlace());
+        out = field(out, "Prebivalište", seg.residenceCity(row), u.getResidenceCity());
+        if (seg.colonies(row) != u.getColonies()) {
+            out = add(out, "Kolonije", String.valueOf(seg.colonies(row)), String.valueOf(u.getColonies()));
+        }
+        out = field(out, "Broj dokumenta", seg.docNumber(row), u.getDocNumber());
+        if (seg.seqNumber(row) != u.getSeqNumber()) {
+            out = add(out, "Redni broj", String.valueOf(seg.seqNumber(row)), String.valueOf(u.getSeqNumber()));
+        }
+        if (seg.intValue(YearSegment.IntColumn.CERTIFICATE_DAY, row) != YearSegment.epochDay(u.getCertificateDate())) {
+            out = add(out, "Datum potvrde", text(seg.certificateDate(row)), text(u.getCertificateDate()));
+        }
+        return out == null ? List.of() : out;
+    }
+
+    /** A missing text equals an empty one: a backup is CSV, which writes null as an empty field. */
+    private static List<FieldChange> field(List<FieldChange> out, String name, String before, String after) {
+        before = text(before);
+        after = text(after);
+        if (before.equals(after)) return out;
+        return add(out, name, before, after);
+    }
+
+    private static List<FieldChange> add(List<FieldChange> out, String name, String before, String after) {
+        if (out == null) out = new ArrayList<>(2);
+        out.add(new FieldChange(name, before, after));
+        return out;
+    }
+
+    private static String text(String v) {
+        return v == null ? "" : v;
+    }
+
+    private static String text(LocalDate d) {
+        return d == null ? "" : d.format(DF);
+    }
+}
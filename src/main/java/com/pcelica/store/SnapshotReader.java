@@ -0,0 +1,245 @@
+package com.pcelica.store;
+
+import com.pcelica.model.BeeUser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Read-only, year-scoped view of a backup for browsing.
+ *
+ * A full backup is read into memory (a gzipped one inflated) and scanned once for the start and end
+ * of every record and its year; nothing else is parsed up front. The file is read with positional
+ * reads and closed right away rather than mapped, because an open mapping would keep retention
+ * from gzipping or deleting it on Windows while the backup is being viewed. Rows are parsed a
+ * page at a time when they are asked for, and only the pages of the year being looked at are kept.
+ * A delta has to be replayed over its chain anyway, so it is materialized into year segments.
+ */
+public final class SnapshotReader {
+    private static final int PAGE = 128;
+    private static final int YEAR_FIELD = 10;
+
+    /** Offsets of the records of one year, in file order. */
+    private static final class YearIndex {
+        int size;
+        int[] starts = new int[64];
+        int[] ends = new int[64];
+        int[] lines = new int[64];
+        // filled on first lookup by id
+        Map<String, Integer> rowById;
+
+        void add(int start, int end, int line) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                lines = Arrays.copyOf(lines, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            lines[size] = line;
+            size++;
+        }
+    }
+
+    private final Path file;
+    // indexed form; null when materialized
+    private final ByteBuffer data;
+    private final Map<Integer, YearIndex> index;
+    // materialized form (deltas); null when indexed
+    private final Map<Integer, YearSegment> segments;
+
+    // parsed pages of pagesYear only
+    private int pagesYear = Integer.MIN_VALUE;
+    private final Map<Integer, BeeUser[]> pages = new HashMap<>();
+
+    private SnapshotReader(Path file, ByteBuffer data, Map<Integer, YearIndex> index, Map<Integer, YearSegment> segments) {
+        this.file = file;
+        this.data = data;
+        this.index = index;
+        this.segments = segments;
+    }
+
+    /**
+     * Indexes a full backup (plain or gzipped CSV) without parsing its records.
+     */
+    static SnapshotReader index(Path file) throws IOException {
+        ByteBuffer data;
+        if (file.getFileName().toString().endsWith(BackupStore.GZ_EXT)) {
+            data = ByteBuffer.wrap(CsvLoader.readBytes(file));
+        } else {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (ch.size() > Integer.MAX_VALUE) throw new IOException("Backup je prevelik za pregled: " + file.getFileName());
+                data = ByteBuffer.allocate((int) ch.size());
+                while (data.hasRemaining()) {
+                    if (ch.read(data, data.position()) < 0) throw new IOException("Backup je skraćen: " + file.getFileName());
+                }
+                data.flip();
+            }
+        }
+        return new SnapshotReader(file, data, scan(file, data), null);
+    }
+
+    /**
+     * Serves already parsed records, e.g. a materialized delta chain.
+     */
+    static SnapshotReader of(Path file, Collection<BeeUser> users) {
+        return new SnapshotReader(file, null, null, SnapshotDiff.segments(users));
+    }
+
+    public Path file() { return file; }
+
+    public SortedSet<Integer> years() {
+        return new TreeSet<>(segments != null ? segments.keySet() : index.keySet());
+    }
+
+    /** Number of records of the year in the backup. */
+    public int size(int year) {
+        if (segments != null) {
+            YearSegment seg = segments.get(year);
+            return seg == null ? 0 : seg.size();
+        }
+        YearIndex yi = index.get(year);
+        return yi == null ? 0 : yi.size;
+    }
+
+    /**
+     * The row-th record of the year in file order; null if that row cannot be parsed.
+     * Asking for another year drops the pages parsed so far.
+     */
+    public synchronized BeeUser get(int year, int row) {
+        if (segments != null) return segments.get(year).get(row);
+        YearIndex yi = index.get(year);
+        if (yi == null || row < 0 || row >= yi.size) throw new IndexOutOfBoundsException(row);
+        if (year != pagesYear) {
+            pages.clear();
+            pagesYear = year;
+        }
+        BeeUser[] page = pages.computeIfAbsent(row / PAGE, p -> parsePage(yi, p));
+        return page[row % PAGE];
+    }
+
+    /**
+     * Record of the year with the given id, or null. The ids of a year are read on the first lookup.
+     */
+    public synchronized BeeUser findById(int year, String id) {
+        if (segments != null) {
+            YearSegment seg = segments.get(year);
+            int row = seg == null ? -1 : seg.rowOf(id);
+            return row < 0 ? null : seg.get(row);
+        }
+        YearIndex yi = index.get(year);
+        if (yi == null) return null;
+        if (yi.rowById == null) {
+            yi.rowById = new HashMap<>(yi.size * 2);
+            for (int i = 0; i < yi.size; i++) yi.rowById.putIfAbsent(firstField(yi.starts[i], yi.ends[i]), i);
+        }
+        Integer row = yi.rowById.get(id);
+        return row == null ? null : get(year, row);
+    }
+
+    private BeeUser[] parsePage(YearIndex yi, int p) {
+        int from = p * PAGE;
+        int to = Math.min(yi.size, from + PAGE);
+        BeeUser[] out = new BeeUser[to - from];
+        for (int i = from; i < to; i++) {
+            byte[] row = bytes(yi.starts[i], yi.ends[i]);
+            out[i - from] = CsvLoader.parseRecord(file, row, 0, row.length, yi.lines[i]);
+        }
+        return out;
+    }
+
+    private byte[] bytes(int start, int end) {
+        byte[] b = new byte[end - start];
+        data.get(start, b);
+        return b;
+    }
+
+    /** The id column of a record, unquoted. */
+    private String firstField(int start, int end) {
+        int i = start;
+        if (i < end && data.get(i) == '"') {
+            i++;
+            int j = i;
+            while (j < end) {
+                if (data.get(j) == '"') {
+                    if (j + 1 < end && data.get(j + 1) == '"') {
+                        j += 2;
+                        continue;
+                    }
+                    break;
+                }
+                j++;
+            }
+            return new String(bytes(i, j), StandardCharsets.UTF_8).replace("\"\"", "\"");
+        }
+        int j = i;
+        while (j < end && data.get(j) != ',') j++;
+        return new String(bytes(i, j), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * One pass over the bytes: skips the BOM and the header, then records where each record starts
+     * and ends (the newline outside quotes) and reads its year field. A record without a valid year
+     * is left out, as the full loader would skip it.
+     */
+    private static Map<Integer, YearIndex> scan(Path file, ByteBuffer data) {
+        Map<Integer, YearIndex> out = new HashMap<>();
+        int n = data.limit();
+        int pos = 0;
+        if (n >= 3 && (data.get(0) & 0xFF) == 0xEF && (data.get(1) & 0xFF) == 0xBB && (data.get(2) & 0xFF) == 0xBF) pos = 3;
+        boolean quoted = false;
+        boolean header = true;
+        int line = 1;
+        int recStart = pos;
+        int recLine = 1;
+        int field = 0;
+        // the year so far; -1 once a non-digit was seen
+        int year = -1;
+        int digits = 0;
+        for (int i = pos; i <= n; i++) {
+            // a missing newline at the end closes the last record
+            byte b = i < n ? data.get(i) : (byte) '\n';
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == ',' && !quoted) {
+                field++;
+                if (field == YEAR_FIELD) {
+                    year = 0;
+                    digits = 0;
+                }
+            } else if (b == '\n' && (!quoted || i == n)) {
+                int end = i > recStart && data.get(i - 1) == '\r' ? i - 1 : i;
+                if (header) {
+                    header = false;
+                } else if (end > recStart) {
+                    if (field >= YEAR_FIELD && year >= 0 && digits > 0) {
+                        out.computeIfAbsent(year, k -> new YearIndex()).add(recStart, end, recLine);
+                    } else {
+                        CsvLoader.logSkipped(new CsvLoader.RowError(file, recLine, "neispravna godina"));
+                    }
+                }
+                line++;
+                recStart = i + 1;
+                recLine = line;
+                field = 0;
+                year = -1;
+                quoted = false;
+            } else if (b == '\n') {
+                line++;
+            } else if (field == YEAR_FIELD && year >= 0 && b != '\r') {
+                if (b >= '0' && b <= '9' && digits < 9) {
+                    year = year * 10 + (b - '0');
+                    digits++;
+                } else {
+                    year = -1;
+                }
+            }
+        }
+        return out;
+    }
+}
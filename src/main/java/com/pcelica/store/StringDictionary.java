@@ -0,0 +1,58 @@
+package com.pcelica.store;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared dictionary for the repetitive text fields (gender, birth place, residence city).
+ * Every distinct value gets one canonical String instance and a small int code, so records
+ * share their instances and columns can store codes. Values are never removed; the fields it is
+ * used for only hold a few hundred distinct values. Thread-safe; lookups of known values do not lock.
+ */
+public final class StringDictionary {
+    private static final ConcurrentHashMap<String, Integer> CODES = new ConcurrentHashMap<>();
+    // values[code]; replaced by a larger copy when full, entries are never changed
+    private static volatile String[] values = new String[64];
+    private static int size;
+
+    private StringDictionary() {}
+
+    /**
+     * The canonical instance equal to s (null stays null).
+     */
+    public static String canonical(String s) {
+        if (s == null) return null;
+        // code() may grow the array, so read the field only after it returns
+        int c = code(s);
+        return values[c];
+    }
+
+    /**
+     * Code of s, assigned on first use; -1 for null.
+     */
+    public static int code(String s) {
+        if (s == null) return -1;
+        Integer c = CODES.get(s);
+        return c != null ? c : add(s);
+    }
+
+    /**
+     * Value for a code from {@link #code}; null for -1.
+     */
+    public static String value(int code) {
+        return code < 0 ? null : values[code];
+    }
+
+    private static synchronized int add(String s) {
+        Integer c = CODES.get(s);
+        if (c != null) return c;
+        String[] v = values;
+        if (size == v.length) {
+            v = Arrays.copyOf(v, v.length * 2);
+            values = v;
+        }
+        v[size] = s;
+        CODES.put(s, size);
+        return size++;
+    }
+}
@@ -0,0 +1,175 @@
+package com.pcelica.store;
+
+import com.google.gson.Gson;
+import com.pcelica.model.BeeUser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Store partitioned by year: data/years/&lt;year&gt;.csv plus manifest.json listing every year
+ * with its row count and content hash. A year file is only rewritten when its content
+ * changed, so closed years are never touched again.
+ *
+ * Year files are written before the manifest; a year whose file is newer than the manifest
+ * is still covered by the journal, which is only reset after the manifest is saved.
+ */
+class YearFiles {
+    private static final String MANIFEST = "manifest.json";
+
+    /** Persisted in manifest.json. */
+    private static class Manifest {
+        int version = 1;
+        Map<String, YearInfo> years = new TreeMap<>();
+    }
+
+    private static class YearInfo {
+        int rows;
+        String hash;
+    }
+
+    private final Path dir;
+    private final Path manifestFile;
+    private Manifest manifest;
+
+    YearFiles(Path dir) {
+        this.dir = dir;
+        this.manifestFile = dir.resolve(MANIFEST);
+        this.manifest = readManifest();
+    }
+
+    boolean exists() {
+        return Files.exists(manifestFile);
+    }
+
+    Set<Integer> years() {
+        Set<Integer> out = new TreeSet<>();
+        for (String y : manifest.years.keySet()) out.add(Integer.parseInt(y));
+        return out;
+    }
+
+    /**
+     * Content hash of one year as {@link BackupStore#contentHash} computes it; null if unknown.
+     */
+    Long hash(int year) {
+        YearInfo info = manifest.years.get(String.valueOf(year));
+        return info == null || info.hash == null ? null : Long.parseUnsignedLong(info.hash, 16);
+    }
+
+    /**
+     * Known content hash of every year.
+     */
+    Map<Integer, Long> hashes() {
+        Map<Integer, Long> out = new TreeMap<>();
+        for (int y : years()) {
+            Long h = hash(y);
+            if (h != null) out.put(y, h);
+        }
+        return out;
+    }
+
+    /**
+     * Content hash of the whole store as {@link BackupStore#contentHash} would compute it
+     * (the sum of the per-year hashes); null if some year has no hash yet.
+     */
+    Long contentHash() {
+        long sum = 0;
+        for (YearInfo info : manifest.years.values()) {
+            if (info.hash == null) return null;
+            sum += Long.parseUnsignedLong(info.hash, 16);
+        }
+        return sum;
+    }
+
+    Path file(int year) {
+        return dir.resolve(year + ".csv");
+    }
+
+    /**
+     * Reads one year; rows that cannot be parsed are reported, not thrown.
+     */
+    CsvLoader.Result read(int year) throws IOException {
+        Path f = file(year);
+        if (!Files.exists(f)) return new CsvLoader.Result(new ArrayList<>(), List.of());
+        return CsvLoader.read(List.of(f));
+    }
+
+    /**
+     * Writes every year that is in the given state or in the manifest (byYear is the whole store).
+     */
+    void writeAll(Map<Integer, ? extends List<BeeUser>> byYear) throws IOException {
+        Set<Integer> all = new HashSet<>(byYear.keySet());
+        all.addAll(years());
+        write(byYear, all);
+    }
+
+    /**
+     * Rewrites the given years whose content differs from the manifest; a year that is
+     * missing or empty in the state loses its file.
+     */
+    void write(Map<Integer, ? extends List<BeeUser>> byYear, Collection<Integer> years) throws IOException {
+        if (!Files.exists(dir)) Files.createDirectories(dir);
+        boolean changed = !exists();
+        for (int y : years) {
+            String key = String.valueOf(y);
+            List<BeeUser> list = byYear.get(y);
+            if (list == null || list.isEmpty()) {
+                Files.deleteIfExists(file(y));
+                if (manifest.years.remove(key) != null) changed = true;
+                continue;
+            }
+            String hash = BackupStore.hex(BackupStore.contentHash(list));
+            YearInfo info = manifest.years.get(key);
+            if (info != null && hash.equals(info.hash) && info.rows == list.size() && Files.exists(file(y))) continue;
+            DataStore.writeCsv(file(y), list);
+            info = new YearInfo();
+            info.rows = list.size();
+            info.hash = hash;
+            manifest.years.put(key, info);
+            changed = true;
+        }
+        if (changed) saveManifest();
+    }
+
+    private Manifest readManifest() {
+        if (!Files.exists(manifestFile)) return new Manifest();
+        try (Reader r = Files.newBufferedReader(manifestFile)) {
+            Manifest m = new Gson().fromJson(r, Manifest.class);
+            if (m == null) return new Manifest();
+            if (m.years == null) m.years = new TreeMap<>();
+            return m;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return scanDir();
+        }
+    }
+
+    /**
+     * Rebuilds the year list from the files on disk when the manifest cannot be read;
+     * without a hash every year is rewritten on the next save.
+     */
+    private Manifest scanDir() {
+        Manifest m = new Manifest();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*.csv")) {
+            for (Path p : ds) {
+                String name = p.getFileName().toString();
+                String year = name.substring(0, name.length() - ".csv".length());
+                if (year.matches("\\d+")) m.years.put(year, new YearInfo());
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        return m;
+    }
+
+    private void saveManifest() throws IOException {
+        Path tmp = manifestFile.resolveSibling(MANIFEST + ".tmp");
+        try (Writer w = Files.newBufferedWriter(tmp)) {
+            new Gson().toJson(manifest, w);
+        }
+        Files.move(tmp, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
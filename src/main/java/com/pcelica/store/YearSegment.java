@@ -0,0 +1,305 @@
+package com.pcelica.store;
+
+import com.pcelica.model.BeeUser;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * The records of one year stored by column: dates as epoch days, numbers as ints, gender and
+ * places as {@link StringDictionary} codes. Immutable; a change makes a new segment.
+ *
+ * As a List it hands out a new BeeUser for every get, so callers that only need a few fields
+ * (the table, totals, filters, sorting) should use the column accessors instead. Every segment
+ * carries an {@link IdIndex}, so rowOf is a lookup that allocates nothing.
+ */
+public final class YearSegment extends AbstractList<BeeUser> implements RandomAccess {
+    /** Integer columns that can be scanned and sorted on. */
+    public enum IntColumn { BIRTH_DAY, CERTIFICATE_DAY, COLONIES, SEQ_NUMBER }
+
+    /** Epoch day stored for a missing date. */
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    private final int year;
+    private final int size;
+    private final String[] ids;
+    private final String[] firstNames;
+    private final String[] lastNames;
+    private final String[] docNumbers;
+    private final int[] genders;
+    private final int[] birthPlaces;
+    private final int[] residenceCities;
+    private final int[] birthDays;
+    private final int[] certificateDays;
+    private final int[] colonies;
+    private final int[] seqNumbers;
+    // set by every factory method before the segment is handed out
+    private IdIndex idIndex;
+
+    private YearSegment(int year, int size, String[] ids, String[] firstNames, String[] lastNames,
+                        String[] docNumbers, int[] genders, int[] birthPlaces, int[] residenceCities,
+                        int[] birthDays, int[] certificateDays, int[] colonies, int[] seqNumbers) {
+        this.year = year;
+        this.size = size;
+        this.ids = ids;
+        this.firstNames = firstNames;
+        this.lastNames = lastNames;
+        this.docNumbers = docNumbers;
+        this.genders = genders;
+        this.birthPlaces = birthPlaces;
+        this.residenceCities = residenceCities;
+        this.birthDays = birthDays;
+        this.certificateDays = certificateDays;
+        this.colonies = colonies;
+        this.seqNumbers = seqNumbers;
+    }
+
+    private YearSegment(int year, int size) {
+        this(year, size, new String[size], new String[size], new String[size], new String[size],
+                new int[size], new int[size], new int[size], new int[size], new int[size], new int[size], new int[size]);
+    }
+
+    static YearSegment empty(int year) {
+        YearSegment s = new YearSegment(year, 0);
+        s.idIndex = IdIndex.build(s.ids, 0);
+        return s;
+    }
+
+    /**
+     * Segment holding the given records (in order) as records of the given year.
+     */
+    static YearSegment of(int year, List<BeeUser> users) {
+        if (users instanceof YearSegment s && s.year == year) return s;
+        YearSegment s = new YearSegment(year, users.size());
+        for (int i = 0; i < users.size(); i++) s.fill(i, users.get(i));
+        s.idIndex = IdIndex.build(s.ids, s.size);
+        return s;
+    }
+
+    /** Fills row i of a segment that is still being built. */
+    private void fill(int i, BeeUser u) {
+        ids[i] = u.getId();
+        firstNames[i] = u.getFirstName();
+        lastNames[i] = u.getLastName();
+        docNumbers[i] = u.getDocNumber();
+        genders[i] = StringDictionary.code(u.getGender());
+        birthPlaces[i] = StringDictionary.code(u.getBirthPlace());
+        residenceCities[i] = StringDictionary.code(u.getResidenceCity());
+        birthDays[i] = epochDay(u.getBirthDate());
+        certificateDays[i] = epochDay(u.getCertificateDate());
+        colonies[i] = u.getColonies();
+        seqNumbers[i] = u.getSeqNumber();
+    }
+
+    private YearSegment copy(int newSize) {
+        int n = Math.min(size, newSize);
+        YearSegment c = new YearSegment(year, newSize);
+        System.arraycopy(ids, 0, c.ids, 0, n);
+        System.arraycopy(firstNames, 0, c.firstNames, 0, n);
+        System.arraycopy(lastNames, 0, c.lastNames, 0, n);
+        System.arraycopy(docNumbers, 0, c.docNumbers, 0, n);
+        System.arraycopy(genders, 0, c.genders, 0, n);
+        System.arraycopy(birthPlaces, 0, c.birthPlaces, 0, n);
+        System.arraycopy(residenceCities, 0, c.residenceCities, 0, n);
+        System.arraycopy(birthDays, 0, c.birthDays, 0, n);
+        System.arraycopy(certificateDays, 0, c.certificateDays, 0, n);
+        System.arraycopy(colonies, 0, c.colonies, 0, n);
+        System.arraycopy(seqNumbers, 0, c.seqNumbers, 0, n);
+        return c;
+    }
+
+    /** New segment with u appended. */
+    YearSegment plus(BeeUser u) {
+        YearSegment c = copy(size + 1);
+        c.fill(size, u);
+        c.idIndex = idIndex.plus(c.ids, size, c.size);
+        return c;
+    }
+
+    /** New segment with the given records appended (in order). */
+    YearSegment plusAll(List<BeeUser> users) {
+        YearSegment c = copy(size + users.size());
+        for (int i = 0; i < users.size(); i++) c.fill(size + i, users.get(i));
+        c.idIndex = idIndex.plus(c.ids, size, c.size);
+        return c;
+    }
+
+    /** New segment with row i replaced by u. */
+    YearSegment withRow(int i, BeeUser u) {
+        Objects.checkIndex(i, size);
+        YearSegment c = copy(size);
+        c.fill(i, u);
+        c.idIndex = idIndex.replaced(ids, c.ids, i, size);
+        return c;
+    }
+
+    /** New segment without row i. */
+    YearSegment minus(int i) {
+        Objects.checkIndex(i, size);
+        YearSegment c = new YearSegment(year, size - 1);
+        int tail = size - i - 1;
+        Object[][] refs = {ids, firstNames, lastNames, docNumbers};
+        Object[][] refsOut = {c.ids, c.firstNames, c.lastNames, c.docNumbers};
+        for (int k = 0; k < refs.length; k++) {
+            System.arraycopy(refs[k], 0, refsOut[k], 0, i);
+            System.arraycopy(refs[k], i + 1, refsOut[k], i, tail);
+        }
+        int[][] ints = {genders, birthPlaces, residenceCities, birthDays, certificateDays, colonies, seqNumbers};
+        int[][] intsOut = {c.genders, c.birthPlaces, c.residenceCities, c.birthDays, c.certificateDays, c.colonies, c.seqNumbers};
+        for (int k = 0; k < ints.length; k++) {
+            System.arraycopy(ints[k], 0, intsOut[k], 0, i);
+            System.arraycopy(ints[k], i + 1, intsOut[k], i, tail);
+        }
+        c.idIndex = idIndex.minus(ids, c.ids, i, c.size);
+        return c;
+    }
+
+    public int year() { return year; }
+
+    @Override
+    public int size() { return size; }
+
+    /**
+     * A new BeeUser for row i.
+     */
+    @Override
+    public BeeUser get(int i) {
+        Objects.checkIndex(i, size);
+        return new BeeUser(ids[i], firstNames[i], lastNames[i], StringDictionary.value(genders[i]),
+                date(birthDays[i]), StringDictionary.value(birthPlaces[i]), StringDictionary.value(residenceCities[i]),
+                colonies[i], docNumbers[i], seqNumbers[i], year, date(certificateDays[i]));
+    }
+
+    public String id(int i) { return ids[i]; }
+    public String firstName(int i) { return firstNames[i]; }
+    public String lastName(int i) { return lastNames[i]; }
+    public String gender(int i) { return StringDictionary.value(genders[i]); }
+    public LocalDate birthDate(int i) { return date(birthDays[i]); }
+    public String birthPlace(int i) { return StringDictionary.value(birthPlaces[i]); }
+    public String residenceCity(int i) { return StringDictionary.value(residenceCities[i]); }
+    public int colonies(int i) { return colonies[i]; }
+    public String docNumber(int i) { return docNumbers[i]; }
+    public int seqNumber(int i) { return seqNumbers[i]; }
+    public LocalDate certificateDate(int i) { return date(certificateDays[i]); }
+
+    /**
+     * Value of an integer column in row i; dates are epoch days or {@link #NO_DATE}.
+     */
+    public int intValue(IntColumn column, int i) {
+        return column(column)[i];
+    }
+
+    /**
+     * Row of the record with the given id; -1 if it is not in this year.
+     */
+    public int rowOf(String id) {
+        return idIndex.rowOf(ids, id);
+    }
+
+    public long totalColonies() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) sum += colonies[i];
+        return sum;
+    }
+
+    /**
+     * Rows whose value in the given column passes the test, in row order.
+     */
+    public int[] rowsWhere(IntColumn column, IntPredicate test) {
+        int[] values = column(column);
+        int[] out = new int[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (test.test(values[i])) out[n++] = i;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Rows ordered by the given column (ascending, missing dates first; ties keep row order).
+     */
+    public int[] rowsOrderedBy(IntColumn column) {
+        int[] values = column(column);
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) keys[i] = ((long) values[i] << 32) | i;
+        Arrays.sort(keys);
+        int[] out = new int[size];
+        for (int i = 0; i < size; i++) out[i] = (int) keys[i];
+        return out;
+    }
+
+    private int[] column(IntColumn column) {
+        return switch (column) {
+            case BIRTH_DAY -> birthDays;
+            case CERTIFICATE_DAY -> certificateDays;
+            case COLONIES -> colonies;
+            case SEQ_NUMBER -> seqNumbers;
+        };
+    }
+
+    static int epochDay(LocalDate d) {
+        return d == null ? NO_DATE : (int) d.toEpochDay();
+    }
+
+    private static LocalDate date(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * Read-only list of several segments one after another; gets are materialized like get.
+     */
+    static List<BeeUser> concat(List<YearSegment> segments) {
+        int[] starts = new int[segments.size() + 1];
+        for (int k = 0; k < segments.size(); k++) starts[k + 1] = starts[k] + segments.get(k).size();
+        YearSegment[] parts = segments.toArray(new YearSegment[0]);
+        return new Concat(parts, starts);
+    }
+
+    private static final class Concat extends AbstractList<BeeUser> implements RandomAccess {
+        private final YearSegment[] parts;
+        private final int[] starts;
+
+        Concat(YearSegment[] parts, int[] starts) {
+            this.parts = parts;
+            this.starts = starts;
+        }
+
+        @Override
+        public BeeUser get(int index) {
+            Objects.checkIndex(index, size());
+            int k = Arrays.binarySearch(starts, 0, parts.length, index);
+            if (k < 0) k = -k - 2;
+            while (parts[k].size() == 0 || index - starts[k] >= parts[k].size()) k++; // empty segments share a start
+            return parts[k].get(index - starts[k]);
+        }
+
+        @Override
+        public int size() {
+            return starts[parts.length];
+        }
+
+        @Override
+        public Iterator<BeeUser> iterator() {
+            return new Iterator<>() {
+                int k;
+                int row;
+
+                @Override
+                public boolean hasNext() {
+                    while (k < parts.length && row >= parts[k].size()) {
+                        k++;
+                        row = 0;
+                    }
+                    return k < parts.length;
+                }
+
+                @Override
+                public BeeUser next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return parts[k].get(row++);
+                }
+            };
+        }
+    }
+}
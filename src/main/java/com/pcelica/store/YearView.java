@@ -0,0 +1,9 @@
+package com.pcelica.store;
+
+/**
+ * Read-only view of one year as it was when the view was taken. The segment is never changed
+ * afterwards (a change to the year replaces it), so it can be kept and iterated without copying
+ * or locking. Two views of a year with the same version hold the same records.
+ */
+public record YearView(int year, long version, YearSegment users) {
+}
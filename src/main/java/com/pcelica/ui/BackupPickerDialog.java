@@ -0,0 +1,199 @@
+package com.pcelica.ui;
+
+import com.pcelica.store.BackupInfo;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableRowSorter;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Backup picker over the backup catalog: one row per backup, filtered by date range and reason.
+ * Works on the catalog entries only, so it opens at once however many backups there are.
+ */
+public class BackupPickerDialog extends JDialog {
+    private static final DateTimeFormatter WHEN = DateTimeFormatter.ofPattern("dd.MM.yyyy. HH:mm:ss");
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("d.M.yyyy");
+    private static final String ALL_REASONS = "Svi razlozi";
+
+    private final List<BackupInfo> backups;
+    private final JTable table;
+    private final TableRowSorter<BackupTableModel> sorter;
+    private final JTextField tfFrom = new JTextField(10);
+    private final JTextField tfTo = new JTextField(10);
+    private final JComboBox<String> cbReason = new JComboBox<>();
+    private final JLabel lblCount = new JLabel(" ");
+    private BackupInfo selected;
+
+    public BackupPickerDialog(Window owner, String title, List<BackupInfo> backups) {
+        super(owner, title, ModalityType.APPLICATION_MODAL);
+        this.backups = backups;
+        BackupTableModel model = new BackupTableModel();
+        this.table = new JTable(model);
+        this.sorter = new TableRowSorter<>(model);
+        initUI();
+        setSize(980, 560);
+        setLocationRelativeTo(owner);
+    }
+
+    private void initUI() {
+        JPanel root = new JPanel(new BorderLayout(10, 10));
+        root.setBorder(new EmptyBorder(12, 12, 12, 12));
+
+        JPanel filters = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 0));
+        filters.add(new JLabel("Od (d.M.gggg):"));
+        filters.add(tfFrom);
+        filters.add(new JLabel("Do:"));
+        filters.add(tfTo);
+        filters.add(Box.createHorizontalStrut(12));
+        filters.add(new JLabel("Razlog:"));
+        cbReason.addItem(ALL_REASONS);
+        for (String r : backups.stream().map(BackupInfo::reason).collect(Collectors.toCollection(TreeSet::new))) {
+            cbReason.addItem(r);
+        }
+        cbReason.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                Object shown = ALL_REASONS.equals(value) || value == null ? value : MainFrame.reasonToReadable((String) value);
+                return super.getListCellRendererComponent(list, shown, index, isSelected, cellHasFocus);
+            }
+        });
+        filters.add(cbReason);
+        root.add(filters, BorderLayout.NORTH);
+
+        // rows come newest first; the sorter is only used for filtering
+        for (int c = 0; c < table.getColumnCount(); c++) sorter.setSortable(c, false);
+        table.setRowSorter(sorter);
+        table.setRowHeight(24);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getTableHeader().setReorderingAllowed(false);
+        table.getColumnModel().getColumn(0).setPreferredWidth(150);
+        table.getColumnModel().getColumn(2).setPreferredWidth(220);
+        table.getColumnModel().getColumn(5).setPreferredWidth(220);
+        if (!backups.isEmpty()) table.setRowSelectionInterval(0, 0);
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) choose();
+            }
+        });
+        root.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.add(lblCount, BorderLayout.WEST);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton bOk = new JButton("Odaberi");
+        JButton bCancel = new JButton("Odustani");
+        buttons.add(bOk);
+        buttons.add(bCancel);
+        bottom.add(buttons, BorderLayout.EAST);
+        root.add(bottom, BorderLayout.SOUTH);
+
+        DocumentListener dl = new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { applyFilter(); }
+            @Override public void removeUpdate(DocumentEvent e) { applyFilter(); }
+            @Override public void changedUpdate(DocumentEvent e) { applyFilter(); }
+        };
+        tfFrom.getDocument().addDocumentListener(dl);
+        tfTo.getDocument().addDocumentListener(dl);
+        cbReason.addActionListener(e -> applyFilter());
+        bOk.addActionListener(e -> choose());
+        bCancel.addActionListener(e -> {
+            selected = null;
+            setVisible(false);
+        });
+
+        setContentPane(root);
+        applyFilter();
+    }
+
+    private void applyFilter() {
+        LocalDate from = parseDay(tfFrom.getText());
+        LocalDate to = parseDay(tfTo.getText());
+        Object reason = cbReason.getSelectedItem();
+        String r = ALL_REASONS.equals(reason) ? null : (String) reason;
+        sorter.setRowFilter(new RowFilter<>() {
+            @Override
+            public boolean include(Entry<? extends BackupTableModel, ? extends Integer> entry) {
+                BackupInfo b = backups.get(entry.getIdentifier());
+                LocalDate day = b.time().toLocalDate();
+                if (from != null && day.isBefore(from)) return false;
+                if (to != null && day.isAfter(to)) return false;
+                return r == null || r.equals(b.reason());
+            }
+        });
+        lblCount.setText("Prikazano: " + table.getRowCount() + " od " + backups.size());
+    }
+
+    /** Empty or unparseable text means no bound. */
+    private static LocalDate parseDay(String text) {
+        String t = text.trim();
+        if (t.endsWith(".")) t = t.substring(0, t.length() - 1);
+        if (t.isEmpty()) return null;
+        try {
+            return LocalDate.parse(t, DAY);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    private void choose() {
+        int row = table.getSelectedRow();
+        if (row < 0) {
+            JOptionPane.showMessageDialog(this, "Odaberite backup iz liste.");
+            return;
+        }
+        selected = backups.get(table.convertRowIndexToModel(row));
+        setVisible(false);
+    }
+
+    /** The chosen backup; null if the dialog was cancelled. */
+    public BackupInfo getSelected() { return selected; }
+
+    private class BackupTableModel extends AbstractTableModel {
+        private final String[] columns = {"Datum i vrijeme", "Dan", "Razlog", "Vrsta", "Zapisa", "Po godinama", "Veličina"};
+
+        @Override public int getRowCount() { return backups.size(); }
+
+        @Override public int getColumnCount() { return columns.length; }
+
+        @Override public String getColumnName(int column) { return columns[column]; }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            BackupInfo b = backups.get(row);
+            return switch (column) {
+                case 0 -> b.time().format(WHEN);
+                case 1 -> MainFrame.bosnianDay(b.time().getDayOfWeek());
+                case 2 -> MainFrame.reasonToReadable(b.reason());
+                case 3 -> b.delta() ? "delta" : "puni";
+                case 4 -> b.rows() < 0 ? "?" : String.valueOf(b.rows());
+                case 5 -> perYear(b.rowsByYear());
+                case 6 -> size(b.bytes());
+                default -> "";
+            };
+        }
+    }
+
+    private static String perYear(Map<Integer, Integer> rows) {
+        if (rows == null) return "?";
+        return rows.entrySet().stream().map(e -> e.getKey() + ": " + e.getValue()).collect(Collectors.joining(", "));
+    }
+
+    private static String size(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+}
@@ -0,0 +1,142 @@
+package com.pcelica.ui;
+
+import com.pcelica.model.BeeUser;
+import com.pcelica.store.SnapshotDiff;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+/**
+ * Shows the differences between two states, one row per changed field. The diff runs in the
+ * background and rows appear while it streams; past MAX_ROWS changes are only counted, so a
+ * large diff does not pile up on the EDT.
+ */
+public class DiffDialog extends JDialog {
+    private static final int MAX_ROWS = 5000;
+
+    /** Runs a diff, e.g. store::diffWithBackup for a given file. */
+    public interface Source {
+        void run(Consumer<SnapshotDiff.Change> out) throws IOException;
+    }
+
+    private final DefaultTableModel model = new DefaultTableModel(
+            new String[]{"Promjena", "Godina", "Ime", "Prezime", "Broj dokumenta", "Polje", "Prije", "Poslije"}, 0) {
+        @Override public boolean isCellEditable(int row, int column) { return false; }
+    };
+    private final JLabel lblSummary = new JLabel("Poređenje u toku...");
+    // counted on the worker thread, read in done()
+    private int added, removed, modified;
+    private SwingWorker<Void, SnapshotDiff.Change> worker;
+
+    public DiffDialog(Window owner, String title, String description, Source source) {
+        super(owner, title, ModalityType.MODELESS);
+        initUI(description);
+        setSize(1000, 560);
+        setLocationRelativeTo(owner);
+        start(source);
+    }
+
+    private void initUI(String description) {
+        JPanel root = new JPanel(new BorderLayout(10, 10));
+        root.setBorder(new EmptyBorder(12, 12, 12, 12));
+        root.add(new JLabel(description), BorderLayout.NORTH);
+
+        JTable table = new JTable(model);
+        table.setRowHeight(24);
+        table.setAutoCreateRowSorter(true);
+        table.getTableHeader().setReorderingAllowed(false);
+        root.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.add(lblSummary, BorderLayout.WEST);
+        JButton bClose = new JButton("Zatvori");
+        bClose.addActionListener(e -> {
+            if (worker != null) worker.cancel(true);
+            setVisible(false);
+            dispose();
+        });
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(bClose);
+        bottom.add(buttons, BorderLayout.EAST);
+        root.add(bottom, BorderLayout.SOUTH);
+
+        setContentPane(root);
+    }
+
+    private void start(Source source) {
+        worker = new SwingWorker<>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                source.run(c -> {
+                    if (isCancelled()) throw new CancellationException();
+                    switch (c.kind()) {
+                        case ADDED -> added++;
+                        case REMOVED -> removed++;
+                        case MODIFIED -> modified++;
+                    }
+                    if (added + removed + modified <= MAX_ROWS) publish(c);
+                });
+                return null;
+            }
+
+            @Override
+            protected void process(List<SnapshotDiff.Change> chunk) {
+                for (SnapshotDiff.Change c : chunk) addChange(c);
+                lblSummary.setText("Poređenje u toku... (" + model.getRowCount() + ")");
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) return;
+                try {
+                    get();
+                    updateSummary();
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    lblSummary.setText("Greška pri poređenju: " + cause.getMessage());
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    private void addChange(SnapshotDiff.Change c) {
+        BeeUser u = c.user();
+        if (c.kind() != SnapshotDiff.Kind.MODIFIED) {
+            if (model.getRowCount() < MAX_ROWS) {
+                model.addRow(new Object[]{kindText(c.kind()), u.getYear(), u.getFirstName(), u.getLastName(), u.getDocNumber(), "", "", ""});
+            }
+            return;
+        }
+        for (SnapshotDiff.FieldChange f : c.fields()) {
+            if (model.getRowCount() >= MAX_ROWS) return;
+            model.addRow(new Object[]{kindText(c.kind()), u.getYear(), u.getFirstName(), u.getLastName(), u.getDocNumber(),
+                    f.field(), f.before(), f.after()});
+        }
+    }
+
+    private void updateSummary() {
+        if (added + removed + modified == 0) {
+            lblSummary.setText("Nema razlika.");
+            return;
+        }
+        String text = "Dodano: " + added + ", uklonjeno: " + removed + ", izmijenjeno: " + modified;
+        if (added + removed + modified > MAX_ROWS || model.getRowCount() >= MAX_ROWS) text += " (prikazani samo prvi redovi)";
+        lblSummary.setText(text);
+    }
+
+    private static String kindText(SnapshotDiff.Kind kind) {
+        return switch (kind) {
+            case ADDED -> "Dodano";
+            case REMOVED -> "Uklonjeno";
+            case MODIFIED -> "Izmijenjeno";
+        };
+    }
+}
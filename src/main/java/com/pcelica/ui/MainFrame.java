@@ -3,7 +3,11 @@ package com.pcelica.ui;
 
 import com.pcelica.model.BeeUser;
 import com.pcelica.pdf.PdfExporter;
+import com.pcelica.pdf.YearExport;
+import com.pcelica.store.BackupInfo;
 import com.pcelica.store.DataStore;
+import com.pcelica.store.SnapshotReader;
+import com.pcelica.store.YearSegment;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -17,6 +21,7 @@ import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.nio.file.*;
 import java.text.Normalizer;
@@ -35,15 +40,10 @@ import java.util.stream.Collectors;
 public class MainFrame extends JFrame {
     private final DataStore store;
     private final JComboBox<Integer> cbYears = new JComboBox<>();
-    private final DefaultTableModel tableModel = new DefaultTableModel(
-            new String[]{"ID", "Ime", "Prezime", "Spol", "Datum rođenja", "Mjesto rođenja", "Prebivalište", "Kolonije", "Broj dokumenta", "Datum potvrde"}, 0) {
-        @Override public boolean isCellEditable(int row, int column) { return false; }
-    };
+    private final UserTableModel tableModel = new UserTableModel();
     private final JTable table = new JTable(tableModel);
     private final TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(tableModel);
     private final JTextField tfSearch = new JTextField(20);
-    private static final DateTimeFormatter OUT_DF = DateTimeFormatter.ofPattern("dd.MM.yyyy.");
-    private static final DateTimeFormatter BK_PARSER = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
     private static final Logger LOGGER = Logger.getLogger(MainFrame.class.getName());
 
     // toolbar components
@@ -54,14 +54,18 @@ public class MainFrame extends JFrame {
     private JButton btnRefresh;
     private JMenuBar menuBar;
     private JMenu toolsMenu;
+    private final JLabel lblSaveStatus = new JLabel(" ");
+    private static final DateTimeFormatter STATUS_TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
 
     // novo polje za stavku u dropdownu "Više"
     private JMenuItem menuDelete;
+    // razlike snapshot-a prema trenutnom stanju, samo dok se gleda snapshot
+    private JMenuItem menuDiff;
 
     // snapshot state
     private boolean viewingSnapshot = false;
     private Path currentSnapshotFile = null;
-    private List<BeeUser> snapshotList = Collections.emptyList();
+    private SnapshotReader snapshot = null;
 
     public MainFrame(DataStore store) {
         super("Pčelarski podsticaj - potvrde");
@@ -72,12 +76,16 @@ public class MainFrame extends JFrame {
         initUI();
         loadYears();
         setLocationRelativeTo(null);
+        SwingUtilities.invokeLater(this::reportLoadErrors);
 
         addWindowListener(new WindowAdapter() {
             @Override public void windowClosing(WindowEvent e) {
                 try {
                     store.saveAll();
-                } catch (Exception ex) { ex.printStackTrace(); }
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    JOptionPane.showMessageDialog(MainFrame.this, "Greška pri snimanju podataka: " + ex.getMessage());
+                }
                 dispose();
                 System.exit(0);
             }
@@ -109,16 +117,23 @@ public class MainFrame extends JFrame {
         JMenuItem restoreStartupItem = new JMenuItem("Restore startup", loadIcon("/icons/restore.png", 16, 16));
         JMenuItem restoreBackupItem = new JMenuItem("Restore from backup", loadIcon("/icons/backup.png", 16, 16));
         JMenuItem snapshotItem = new JMenuItem("Učitaj snapshot", loadIcon("/icons/snapshot.png", 16, 16));
+        JMenuItem rolloverItem = new JMenuItem("Prenos iz ranije godine", loadIcon("/icons/add.png", 16, 16));
+        JMenuItem compareBackupsItem = new JMenuItem("Uporedi dva backupa", loadIcon("/icons/backup.png", 16, 16));
+        JMenuItem exportYearItem = new JMenuItem("PDF potvrde za cijelu godinu", loadIcon("/icons/export.png", 16, 16));
 
         exportAllItem.addActionListener(e -> onExportAll());
+        rolloverItem.addActionListener(e -> onRollover());
+        compareBackupsItem.addActionListener(e -> onCompareBackups());
+        exportYearItem.addActionListener(e -> onExportYear());
         importItem.addActionListener(e -> onImport());
         restoreStartupItem.addActionListener(e -> {
             try {
                 store.restoreSnapshot();
                 viewingSnapshot = false;
                 currentSnapshotFile = null;
-                snapshotList = Collections.emptyList();
+                setSnapshot(null);
                 if (btnMakeSnapshotMain != null) btnMakeSnapshotMain.setEnabled(false);
+                loadYears();
                 refreshTable();
                 JOptionPane.showMessageDialog(this, "Vraćeno stanje pri pokretanju aplikacije.");
             } catch (Exception ex) { ex.printStackTrace(); JOptionPane.showMessageDialog(this, "Greška: " + ex.getMessage()); }
@@ -135,7 +150,7 @@ public class MainFrame extends JFrame {
                     store.importSnapshotAsMainReplaceReserved(currentSnapshotFile);
                     viewingSnapshot = false;
                     currentSnapshotFile = null;
-                    snapshotList = Collections.emptyList();
+                    setSnapshot(null);
                     if (btnMakeSnapshotMain != null) btnMakeSnapshotMain.setEnabled(false);
                     loadYears();
                     refreshTable();
@@ -150,9 +165,13 @@ public class MainFrame extends JFrame {
         toolsMenu.add(exportAllItem);
         toolsMenu.add(importItem);
         toolsMenu.addSeparator();
+        toolsMenu.add(rolloverItem);
+        toolsMenu.add(exportYearItem);
+        toolsMenu.addSeparator();
         toolsMenu.add(restoreStartupItem);
         toolsMenu.add(restoreBackupItem);
         toolsMenu.add(snapshotItem);
+        toolsMenu.add(compareBackupsItem);
 
         menuBar.add(toolsMenu);
         setJMenuBar(menuBar);
@@ -246,8 +265,9 @@ public class MainFrame extends JFrame {
                 store.restoreSnapshot();
                 viewingSnapshot = false;
                 currentSnapshotFile = null;
-                snapshotList = Collections.emptyList();
+                setSnapshot(null);
                 if (btnMakeSnapshotMain != null) btnMakeSnapshotMain.setEnabled(false);
+                loadYears();
                 refreshTable();
                 JOptionPane.showMessageDialog(this, "Vraćeno stanje pri pokretanju aplikacije.");
             } catch (Exception ex) { ex.printStackTrace(); JOptionPane.showMessageDialog(this, "Greška: " + ex.getMessage()); }
@@ -270,7 +290,7 @@ public class MainFrame extends JFrame {
                     store.importSnapshotAsMainReplaceReserved(currentSnapshotFile);
                     viewingSnapshot = false;
                     currentSnapshotFile = null;
-                    snapshotList = Collections.emptyList();
+                    setSnapshot(null);
                     if (btnMakeSnapshotMain != null) btnMakeSnapshotMain.setEnabled(false);
                     loadYears();
                     refreshTable();
@@ -283,6 +303,11 @@ public class MainFrame extends JFrame {
         });
         moreMenu.add(mLoadSnapshot);
 
+        menuDiff = new JMenuItem("Razlike u odnosu na trenutno stanje", snapshotIcon);
+        menuDiff.setEnabled(false);
+        menuDiff.addActionListener(e -> showSnapshotDiff());
+        moreMenu.add(menuDiff);
+
         btnMore.addMouseListener(new MouseAdapter() {
             @Override
             public void mousePressed(MouseEvent e) {
@@ -337,6 +362,12 @@ public class MainFrame extends JFrame {
         scroll.setBorder(new EmptyBorder(8, 0, 0, 0));
         mainPanel.add(scroll, BorderLayout.CENTER);
 
+        // --- SAVE STATUS (izmjene se snimaju u pozadini) ---
+        lblSaveStatus.setBorder(new EmptyBorder(6, 2, 0, 0));
+        lblSaveStatus.setForeground(Color.GRAY);
+        mainPanel.add(lblSaveStatus, BorderLayout.SOUTH);
+        store.setCommitListener(() -> SwingUtilities.invokeLater(this::updateSaveStatus));
+
         setContentPane(mainPanel);
 
         // --- ACTIONS ---
@@ -496,9 +527,9 @@ public class MainFrame extends JFrame {
             try {
                 File targetDir = chooser.getSelectedFile();
 
-                // Export CSV
+                // Export CSV (all years in one file)
                 Path csvFile = Paths.get(targetDir.getAbsolutePath(), "store.csv");
-                Files.copy(Paths.get("data", "store.csv"), csvFile, StandardCopyOption.REPLACE_EXISTING);
+                store.exportCsv(csvFile);
 
                 // Export reserved numbers
                 Path jsonFile = Paths.get(targetDir.getAbsolutePath(), "reserved_numbers.json");
@@ -533,19 +564,16 @@ public class MainFrame extends JFrame {
 
                 if (confirm == JOptionPane.YES_OPTION) {
                     try {
-                        // Copy files to data directory
-                        Files.copy(csvFile.toPath(), Paths.get("data", "store.csv"), StandardCopyOption.REPLACE_EXISTING);
-                        Files.copy(jsonFile.toPath(), Paths.get("data", "reserved_numbers.json"), StandardCopyOption.REPLACE_EXISTING);
-
-                        // Reload the datastore
-                        store.load();
+                        // Copy files to data directory and reload the datastore
+                        store.replaceDataFiles(csvFile.toPath(), jsonFile.toPath());
                         viewingSnapshot = false;
                         currentSnapshotFile = null;
-                        snapshotList = Collections.emptyList();
+                        setSnapshot(null);
                         loadYears();
                         refreshTable();
 
                         JOptionPane.showMessageDialog(this, "Podaci uspješno importovani");
+                        reportLoadErrors();
                     } catch (Exception ex) {
                         ex.printStackTrace();
                         JOptionPane.showMessageDialog(this, "Greška pri importu: " + ex.getMessage());
@@ -655,7 +683,8 @@ public class MainFrame extends JFrame {
         Integer selectedYear = (Integer) cbYears.getSelectedItem();
         cbYears.removeAllItems();
 
-        Set<Integer> years = store.getYears();
+        // a snapshot may hold years the current data does not
+        Set<Integer> years = viewingSnapshot && snapshot != null ? new HashSet<>(snapshot.years()) : store.getYears();
         if (years.isEmpty()) {
             years.add(java.time.LocalDate.now().getYear());
         }
@@ -696,25 +725,18 @@ public class MainFrame extends JFrame {
         LOGGER.log(Level.INFO, "Cleared table, year: " + year);
 
         if (year != null) {
-            List<BeeUser> users = viewingSnapshot ?
-                    snapshotList.stream().filter(u -> u.getYear() == year).collect(Collectors.toList()) :
-                    store.getForYear(year);
-
-            LOGGER.log(Level.INFO, "Found " + users.size() + " users for year " + year);
-
-            for (BeeUser u : users) {
-                tableModel.addRow(new Object[]{
-                        u.getId(),
-                        u.getFirstName(),
-                        u.getLastName(),
-                        u.getGender(),
-                        u.getBirthDate() == null ? "" : u.getBirthDate().format(OUT_DF),
-                        u.getBirthPlace(),
-                        u.getResidenceCity(),
-                        u.getColonies(),
-                        u.getDocNumber(),
-                        u.getCertificateDate() == null ? "" : u.getCertificateDate().format(OUT_DF)
-                });
+            if (viewingSnapshot) {
+                // rows are parsed from the backup when the table shows them
+                LOGGER.log(Level.INFO, "Found " + snapshot.size(year) + " users for year " + year);
+                tableModel.showSnapshot(snapshot, year);
+            } else {
+                // straight from the columns, no BeeUser per row
+                YearSegment seg = store.getForYear(year);
+                LOGGER.log(Level.INFO, "Found " + seg.size() + " users for year " + year);
+                for (int i = 0; i < seg.size(); i++) {
+                    tableModel.addUserRow(seg.id(i), seg.firstName(i), seg.lastName(i), seg.gender(i), seg.birthDate(i),
+                            seg.birthPlace(i), seg.residenceCity(i), seg.colonies(i), seg.docNumber(i), seg.certificateDate(i));
+                }
             }
         }
 
@@ -730,20 +752,27 @@ public class MainFrame extends JFrame {
         btnEdit.setEnabled(canModify);
         menuDelete.setEnabled(canModify);
         btnMakeSnapshotMain.setEnabled(viewingSnapshot);
+        menuDiff.setEnabled(viewingSnapshot);
 
         LOGGER.log(Level.INFO, "refreshTable completed");
     }
 
     private BeeUser getUserByIdFromCurrentView(String id) {
         if (viewingSnapshot) {
-            return snapshotList.stream().filter(u -> u.getId().equals(id)).findFirst().orElse(null);
+            Integer year = (Integer) cbYears.getSelectedItem();
+            if (year == null || snapshot == null) return null;
+            return snapshot.findById(year, id);
         } else {
             Integer year = (Integer) cbYears.getSelectedItem();
             if (year == null) return null;
-            return store.getForYear(year).stream().filter(u -> u.getId().equals(id)).findFirst().orElse(null);
+            return store.findById(year, id);
         }
     }
 
+    private void setSnapshot(SnapshotReader reader) {
+        snapshot = reader;
+    }
+
     // ACTIONS (Add/Edit/Delete/Export) ------------------------------------------------
 
     private void onAdd() {
@@ -780,30 +809,12 @@ public class MainFrame extends JFrame {
         BeeUser previous = store.getLatestByNameBefore(first, last, year);
         BeeUser toEdit;
         if (previous != null) {
-            toEdit = new BeeUser();
-            toEdit.setFirstName(previous.getFirstName());
-            toEdit.setLastName(previous.getLastName());
-            toEdit.setGender(previous.getGender());
-            toEdit.setBirthDate(previous.getBirthDate());
-            // Sačuvati originalni unos za ova polja, bez konverzije u Title Case
-            toEdit.setBirthPlace(previous.getBirthPlace());
-            toEdit.setResidenceCity(previous.getResidenceCity());
-            toEdit.setColonies(previous.getColonies());
-            toEdit.setCertificateDate(previous.getCertificateDate());
+            // Sačuvati originalni unos za ova polja, bez konverzije u Title Case (id i brojevi se ne prenose)
+            toEdit = previous.withId(null).withNumbers(0, 0, null);
             JOptionPane.showMessageDialog(this, "Pronađeni podaci iz godine " + previous.getYear() + ". Možete potvrditi ili izmijeniti podatke u sljedećem dijalogu.");
         } else {
-            toEdit = new BeeUser();
-            toEdit.setFirstName(first);
-            toEdit.setLastName(last);
             // Ostala polja ostaviti prazna ili postaviti default vrijednosti
-            // Set default certificate date to the last user's certificate date in the same year
-            List<BeeUser> currentYearUsers = store.getForYear(year);
-            if (!currentYearUsers.isEmpty()) {
-                BeeUser lastUser = currentYearUsers.get(currentYearUsers.size() - 1);
-                toEdit.setCertificateDate(lastUser.getCertificateDate());
-            } else {
-                toEdit.setCertificateDate(LocalDate.now());
-            }
+            toEdit = new BeeUser().withFirstName(first).withLastName(last).withCertificateDate(defaultCertificateDate(year));
         }
 
         // lockName = true -> in second dialog name fields are not editable (user wanted this)
@@ -813,7 +824,7 @@ public class MainFrame extends JFrame {
         BeeUser u = dlg.getUser();
 
         // assign id BEFORE persisting so update/delete can reference it
-        u.setId(UUID.randomUUID().toString());
+        u = u.withId(UUID.randomUUID().toString());
 
         if (store.existsSameName(year, u.getFirstName(), u.getLastName())) {
             JOptionPane.showMessageDialog(this, "Nakon izmjene, postoji pčelar s istim imenom i prezimenom za odabranu godinu.");
@@ -821,49 +832,67 @@ public class MainFrame extends JFrame {
         }
 
         int seq = store.reserveNext(year);
-        u.setSeqNumber(seq);
-        u.setYear(year);
-        u.setDocNumber(String.format("14-%02d/%02d", seq, year % 100));
+        u = u.withNumbers(year, seq, DataStore.docNumber(year, seq));
         store.addUser(u);
         refreshTable();
     }
 
+    /**
+     * Default certificate date for a new entry: the last entry's certificate date in the same year, else today.
+     */
+    private LocalDate defaultCertificateDate(int year) {
+        YearSegment seg = store.getForYear(year);
+        return seg.isEmpty() ? LocalDate.now() : seg.certificateDate(seg.size() - 1);
+    }
+
+    /**
+     * Carries members of an earlier year into the selected year in one go, after a preview.
+     */
+    private void onRollover() {
+        if (viewingSnapshot) {
+            handleModifyWhileViewingSnapshot();
+            return;
+        }
+        Integer year = (Integer) cbYears.getSelectedItem();
+        if (year == null) return;
+        List<Integer> earlier = store.getYears().stream()
+                .filter(y -> y < year)
+                .sorted(Collections.reverseOrder())
+                .collect(Collectors.toList());
+        if (earlier.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Nema ranijih godina iz kojih bi se prenijeli pčelari.");
+            return;
+        }
+        RolloverDialog dlg = new RolloverDialog(this, store, earlier, year, defaultCertificateDate(year));
+        dlg.setVisible(true);
+        if (!dlg.isOk()) return;
+        List<BeeUser> added = store.rollover(dlg.getFromYear(), year, dlg.getSelectedIds(), dlg.getCertificateDate());
+        refreshTable();
+        JOptionPane.showMessageDialog(this, "Preneseno " + added.size() + " pčelara iz godine " + dlg.getFromYear() + " u godinu " + year + ".");
+    }
+
     private void onEdit() {
         BeeUser u = selectedUser();
         if (u == null) {
             JOptionPane.showMessageDialog(this, "Odaberi korisnika iz tabele.");
             return;
         }
-        BeeUser clone = new BeeUser();
-        clone.setId(u.getId());
-        clone.setFirstName(u.getFirstName());
-        clone.setLastName(u.getLastName());
-        clone.setGender(u.getGender());
-        clone.setBirthDate(u.getBirthDate());
-        // Sačuvati originalne vrijednosti za ova polja
-        clone.setBirthPlace(u.getBirthPlace());
-        clone.setResidenceCity(u.getResidenceCity());
-        clone.setColonies(u.getColonies());
-        clone.setDocNumber(u.getDocNumber());
-        clone.setSeqNumber(u.getSeqNumber());
-        clone.setYear(u.getYear());
-        clone.setCertificateDate(u.getCertificateDate());
 
         // Allow changing name when editing (lockName = false)
-        UserDialog dlg = new UserDialog(this, "Uredi pčelara", clone, false); // lockName = false
+        // records are immutable, so the dialog can start from the stored one
+        UserDialog dlg = new UserDialog(this, "Uredi pčelara", u, false); // lockName = false
         dlg.setVisible(true);
         if (!dlg.isOk()) return;
         BeeUser edited = dlg.getUser();
         if (!edited.getFirstName().equalsIgnoreCase(u.getFirstName()) ||
                 !edited.getLastName().equalsIgnoreCase(u.getLastName())) {
-            if (store.existsSameName(edited.getYear(), edited.getFirstName(), edited.getLastName())) {
+            // the record itself does not count, so fixing only diacritics is allowed
+            if (store.existsSameName(edited.getYear(), edited.getFirstName(), edited.getLastName(), u.getId())) {
                 JOptionPane.showMessageDialog(this, "Već postoji pčelar s istim imenom i prezimenom za odabranu godinu.");
                 return;
             }
         }
-        edited.setSeqNumber(u.getSeqNumber());
-        edited.setDocNumber(u.getDocNumber());
-        edited.setId(u.getId());
+        edited = edited.withId(u.getId()).withNumbers(u.getYear(), u.getSeqNumber(), u.getDocNumber());
         store.updateUser(edited);
         refreshTable();
     }
@@ -912,6 +941,41 @@ public class MainFrame extends JFrame {
         }
     }
 
+    /**
+     * Certificates for every member of the selected year, written in the background (YearExportDialog):
+     * a PDF per member, or one PDF for printing with a page per member.
+     */
+    private void onExportYear() {
+        Integer year = (Integer) cbYears.getSelectedItem();
+        if (year == null) {
+            JOptionPane.showMessageDialog(this, "Odaberi godinu prvo.");
+            return;
+        }
+        // the segment is immutable, so the workers can read it while the data keeps changing
+        List<BeeUser> users = store.getForYear(year);
+        if (users.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Nema pčelara za godinu " + year + ".");
+            return;
+        }
+        try {
+            Path dir = PdfExporter.yearFolder(year);
+            String note = viewingSnapshot ? "\n(potvrde se prave iz trenutnih podataka, ne iz snapshot-a)" : "";
+            String[] options = {"Zasebni fajlovi", "Jedan fajl za štampu", "Odustani"};
+            int r = JOptionPane.showOptionDialog(this, "Exportovati " + users.size() + " PDF potvrda za godinu " + year
+                    + " u folder:\n" + dir + "\nPostojeći fajlovi s istim imenom biće zamijenjeni." + note,
+                    "PDF potvrde za cijelu godinu", JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE,
+                    null, options, options[0]);
+            YearExport export;
+            if (r == 0) export = new YearExport(users, dir);
+            else if (r == 1) export = YearExport.merged(users, dir.resolve("Potvrde-" + year + ".pdf"));
+            else return;
+            new YearExportDialog(this, "PDF potvrde za godinu " + year, export).setVisible(true);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Greška pri exportu: " + ex.getMessage());
+        }
+    }
+
     private void refreshView() {
         SwingUtilities.invokeLater(() -> {
             tfSearch.setText("");
@@ -944,7 +1008,7 @@ public class MainFrame extends JFrame {
             store.importSnapshotAsMainReplaceReserved(currentSnapshotFile);
             viewingSnapshot = false;
             currentSnapshotFile = null;
-            snapshotList = Collections.emptyList();
+            setSnapshot(null);
             btnMakeSnapshotMain.setEnabled(false);
             loadYears();
             refreshTable();
@@ -955,7 +1019,7 @@ public class MainFrame extends JFrame {
     public void exitSnapshotView() {
         viewingSnapshot = false;
         currentSnapshotFile = null;
-        snapshotList = Collections.emptyList();
+        setSnapshot(null);
         btnMakeSnapshotMain.setEnabled(false);
         loadYears();
         refreshTable();
@@ -963,35 +1027,22 @@ public class MainFrame extends JFrame {
 
     public void editUserFromDetails(BeeUser user) {
         BeeUser u = user;
-        BeeUser clone = new BeeUser();
-        clone.setId(u.getId());
-        clone.setFirstName(u.getFirstName());
-        clone.setLastName(u.getLastName());
-        clone.setGender(u.getGender());
-        clone.setBirthDate(u.getBirthDate());
-        clone.setBirthPlace(u.getBirthPlace());
-        clone.setResidenceCity(u.getResidenceCity());
-        clone.setColonies(u.getColonies());
-        clone.setDocNumber(u.getDocNumber());
-        clone.setSeqNumber(u.getSeqNumber());
-        clone.setYear(u.getYear());
-        clone.setCertificateDate(u.getCertificateDate());
 
         // Allow changing name when editing from details
-        UserDialog dlg = new UserDialog(this, "Uredi pčelara", clone, false); // lockName = false
+        // records are immutable, so the dialog can start from the stored one
+        UserDialog dlg = new UserDialog(this, "Uredi pčelara", u, false); // lockName = false
         dlg.setVisible(true);
         if (!dlg.isOk()) return;
         BeeUser edited = dlg.getUser();
         if (!edited.getFirstName().equalsIgnoreCase(u.getFirstName()) ||
                 !edited.getLastName().equalsIgnoreCase(u.getLastName())) {
-            if (store.existsSameName(edited.getYear(), edited.getFirstName(), edited.getLastName())) {
+            // the record itself does not count, so fixing only diacritics is allowed
+            if (store.existsSameName(edited.getYear(), edited.getFirstName(), edited.getLastName(), u.getId())) {
                 JOptionPane.showMessageDialog(this, "Već postoji pčelar s istim imenom i prezimenom za odabranu godinu.");
                 return;
             }
         }
-        edited.setSeqNumber(u.getSeqNumber());
-        edited.setDocNumber(u.getDocNumber());
-        edited.setId(u.getId());
+        edited = edited.withId(u.getId()).withNumbers(u.getYear(), u.getSeqNumber(), u.getDocNumber());
         store.updateUser(edited);
         refreshTable();
     }
@@ -1026,66 +1077,96 @@ public class MainFrame extends JFrame {
 
     /**
      * Restore from backup: show readable list (dd.MM.yyyy. (weekday) HH:mm:ss — <type>)
-     * and allow user to pick one. When chosen, load it into snapshotList and set viewingSnapshot=true.
+     * and allow user to pick one. When chosen, open it as the snapshot being viewed and set viewingSnapshot=true.
      */
     private void onRestoreFromBackup() {
         try {
-            Path dataDir = Paths.get("data");
-            if (!Files.exists(dataDir)) {
-                JOptionPane.showMessageDialog(this, "Nema data foldera ili backup fajlova.");
-                return;
-            }
-            List<Path> backups = new ArrayList<>();
-            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dataDir, "backup_*.csv")) {
-                for (Path p : ds) backups.add(p);
-            }
-            if (backups.isEmpty()) {
-                JOptionPane.showMessageDialog(this, "Nema backup fajlova u data/.");
-                return;
-            }
-            // sort newest first
-            backups.sort(Comparator.comparing(Path::getFileName).reversed());
-
-            // build display names in bosnian
-            String[] display = new String[backups.size()];
-            for (int i = 0; i < backups.size(); i++) {
-                String fname = backups.get(i).getFileName().toString();
-                String human = fname;
-                try {
-                    String core = fname.substring("backup_".length(), fname.length() - ".csv".length());
-                    int idx = core.lastIndexOf('_');
-                    String ts = core.substring(0, idx);
-                    String reason = core.substring(idx + 1);
-                    LocalDateTime dt = LocalDateTime.parse(ts, BK_PARSER);
-                    String weekday = bosnianDay(dt.getDayOfWeek());
-                    String when = dt.format(DateTimeFormatter.ofPattern("dd.MM.yyyy. HH:mm:ss"));
-                    String reasonReadable = reasonToReadable(reason);
-                    human = String.format("%s (%s) — %s", when, weekday, reasonReadable);
-                } catch (Exception ex) {
-                    // fallback to filename
-                }
-                display[i] = human;
-            }
-
-            String chosen = (String) JOptionPane.showInputDialog(this, "Izaberite backup fajl:", "Restore from backup", JOptionPane.PLAIN_MESSAGE, null, display, display[0]);
-            if (chosen == null) return;
-            int idx = Arrays.asList(display).indexOf(chosen);
-            if (idx < 0) return;
-            Path selected = backups.get(idx);
-            List<BeeUser> parsed = store.readCsv(selected);
-            snapshotList = parsed;
+            Path selected = chooseBackup("Izaberite backup fajl:", "Restore from backup");
+            if (selected == null) return;
+            setSnapshot(store.openSnapshot(selected));
             viewingSnapshot = true;
             currentSnapshotFile = selected;
             btnMakeSnapshotMain.setEnabled(true);
+            loadYears();
             refreshTable();
-            JOptionPane.showMessageDialog(this, "Snapshot učitan iz: " + selected.getFileName() + " (read-only). Ako želite uređivati, kliknite 'Učitaj ovaj snapshot kao glavni'.");
+            JOptionPane.showMessageDialog(this, "Snapshot učitan iz: " + selected.getFileName() + " (read-only). Ako želite uređivati, kliknite 'Učitaj ovaj snapshot kao glavni'."
+                    + "\nŠta bi se promijenilo vraćanjem ovog snapshot-a: Više → 'Razlike u odnosu na trenutno stanje'.");
         } catch (Exception ex) {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this, "Greška pri učitavanju backup-a: " + ex.getMessage());
         }
     }
 
-    private String reasonToReadable(String reason) {
+    /**
+     * What restoring the snapshot being viewed would add, remove or change in the current data.
+     */
+    private void showSnapshotDiff() {
+        if (!viewingSnapshot || currentSnapshotFile == null) {
+            JOptionPane.showMessageDialog(this, "Nema snapshot-a za poređenje.");
+            return;
+        }
+        Path file = currentSnapshotFile;
+        new DiffDialog(this, "Razlike: " + file.getFileName(),
+                "Promjene koje bi vraćanje ovog snapshot-a napravilo u trenutnim podacima.",
+                out -> store.diffWithBackup(file, out)).setVisible(true);
+    }
+
+    private void onCompareBackups() {
+        try {
+            Path older = chooseBackup("Izaberite stariji backup:", "Uporedi dva backupa");
+            if (older == null) return;
+            Path newer = chooseBackup("Izaberite noviji backup:", "Uporedi dva backupa");
+            if (newer == null) return;
+            new DiffDialog(this, "Razlike: " + older.getFileName() + " → " + newer.getFileName(),
+                    "Promjene od starijeg do novijeg backupa.",
+                    out -> store.diffBackups(older, newer, out)).setVisible(true);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Greška pri poređenju backup-a: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Lets the user pick a backup from the backup catalog; null if there is none or nothing was picked.
+     */
+    private Path chooseBackup(String prompt, String title) {
+        List<BackupInfo> backups = store.getBackups();
+        if (backups.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Nema backup fajlova u data/.");
+            return null;
+        }
+        BackupPickerDialog dlg = new BackupPickerDialog(this, title + " — " + prompt, backups);
+        dlg.setVisible(true);
+        BackupInfo chosen = dlg.getSelected();
+        if (chosen == null) return null;
+        Path file = store.backupFile(chosen);
+        if (file == null) JOptionPane.showMessageDialog(this, "Backup više ne postoji: " + chosen.name());
+        return file;
+    }
+
+    /**
+     * Upozori ako neki redovi iz CSV-a nisu mogli biti učitani (prikazuje najviše 20).
+     */
+    private void reportLoadErrors() {
+        List<String> errors = store.getLoadErrors();
+        if (errors.isEmpty()) return;
+        StringBuilder sb = new StringBuilder("Neki redovi nisu učitani (" + errors.size() + "):\n");
+        for (int i = 0; i < Math.min(20, errors.size()); i++) sb.append(errors.get(i)).append('\n');
+        if (errors.size() > 20) sb.append("...");
+        JOptionPane.showMessageDialog(this, sb.toString(), "Upozorenje", JOptionPane.WARNING_MESSAGE);
+    }
+
+    private void updateSaveStatus() {
+        if (store.getCommitError() != null) {
+            lblSaveStatus.setText("Izmjene NISU sačuvane: " + store.getCommitError());
+        } else if (store.getPendingCount() > 0) {
+            lblSaveStatus.setText("Čuvanje izmjena...");
+        } else if (store.getLastCommitTime() != null) {
+            lblSaveStatus.setText("Sve izmjene sačuvane (" + store.getLastCommitTime().format(STATUS_TIME) + ")");
+        }
+    }
+
+    static String reasonToReadable(String reason) {
         if (reason == null) return "nepoznato";
         switch (reason.toUpperCase(Locale.ROOT)) {
             case "ADD": return "nakon dodavanja";
@@ -1096,11 +1177,13 @@ public class MainFrame extends JFrame {
             case "IMPORT": return "uvoz snapshot-a (union)";
             case "IMPORT_REPLACE": return "uvoz snapshot-a (zamjena rezervacija)";
             case "RESTORE_STARTUP": return "restore startup";
+            case "BATCH": return "nakon više izmjena";
+            case "ROLLOVER": return "prenos iz ranije godine";
             default: return reason.toLowerCase();
         }
     }
 
-    private String bosnianDay(DayOfWeek d) {
+    static String bosnianDay(DayOfWeek d) {
         switch (d) {
             case MONDAY: return "ponedjeljak";
             case TUESDAY: return "utorak";
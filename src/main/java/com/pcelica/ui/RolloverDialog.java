@@ -0,0 +1,170 @@
+package com.pcelica.ui;
+
+import com.pcelica.model.BeeUser;
+import com.pcelica.store.DataStore;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Preview of a rollover: the members of an earlier year that would be carried into the target
+ * year, each one can be left out. Nothing is changed here; the caller runs DataStore.rollover.
+ */
+public class RolloverDialog extends JDialog {
+    private final DataStore store;
+    private final int toYear;
+    private boolean ok = false;
+
+    private final JComboBox<Integer> cbFromYear = new JComboBox<>();
+    private final JComboBox<Integer> cbCertDay = new JComboBox<>();
+    private final JComboBox<String> cbCertMonth = new JComboBox<>();
+    private final JComboBox<Integer> cbCertYear = new JComboBox<>();
+    private final JLabel lblSummary = new JLabel(" ");
+    // candidates of the selected source year
+    private DataStore.RolloverPreview preview;
+    private final DefaultTableModel model = new DefaultTableModel(
+            new Object[]{"", "id", "Ime", "Prezime", "Mjesto rođenja", "Prebivalište", "Br. zajednica"}, 0) {
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? Boolean.class : Object.class;
+        }
+
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return column == 0;
+        }
+    };
+
+    public RolloverDialog(Window owner, DataStore store, List<Integer> fromYears, int toYear, LocalDate certificateDate) {
+        super(owner, "Prenos pčelara u godinu " + toYear, ModalityType.APPLICATION_MODAL);
+        this.store = store;
+        this.toYear = toYear;
+        initUI(fromYears, certificateDate);
+        setSize(820, 560);
+        setLocationRelativeTo(owner);
+    }
+
+    private void initUI(List<Integer> fromYears, LocalDate certificateDate) {
+        JPanel root = new JPanel(new BorderLayout(10, 10));
+        root.setBorder(new EmptyBorder(12, 12, 12, 12));
+
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 0));
+        top.add(new JLabel("Iz godine:"));
+        for (int y : fromYears) cbFromYear.addItem(y);
+        top.add(cbFromYear);
+        top.add(Box.createHorizontalStrut(16));
+        top.add(new JLabel("Datum potvrde:"));
+        for (int d = 1; d <= 31; d++) cbCertDay.addItem(d);
+        for (String m : UserDialog.BOSNIAN_MONTHS) cbCertMonth.addItem(m);
+        LocalDate d = certificateDate != null ? certificateDate : LocalDate.now();
+        // the target year, the default date's year and this year are always offered
+        int currentYear = LocalDate.now().getYear();
+        int newest = Math.max(Math.max(toYear, d.getYear()), currentYear);
+        int oldest = Math.min(Math.min(toYear, d.getYear()), currentYear) - 5;
+        for (int y = newest; y >= oldest; y--) cbCertYear.addItem(y);
+        cbCertDay.setSelectedItem(d.getDayOfMonth());
+        cbCertMonth.setSelectedIndex(d.getMonthValue() - 1);
+        cbCertYear.setSelectedItem(d.getYear());
+        top.add(cbCertDay);
+        top.add(cbCertMonth);
+        top.add(cbCertYear);
+        root.add(top, BorderLayout.NORTH);
+
+        JTable table = new JTable(model);
+        table.setRowHeight(24);
+        table.getColumnModel().getColumn(0).setMaxWidth(40);
+        table.getColumnModel().getColumn(1).setMinWidth(0);
+        table.getColumnModel().getColumn(1).setMaxWidth(0);
+        table.getTableHeader().setReorderingAllowed(false);
+        root.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.add(lblSummary, BorderLayout.WEST);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton bAll = new JButton("Označi sve");
+        JButton bNone = new JButton("Poništi sve");
+        JButton bOk = new JButton("Prenesi");
+        JButton bCancel = new JButton("Odustani");
+        buttons.add(bAll);
+        buttons.add(bNone);
+        buttons.add(bOk);
+        buttons.add(bCancel);
+        bottom.add(buttons, BorderLayout.EAST);
+        root.add(bottom, BorderLayout.SOUTH);
+
+        cbFromYear.addActionListener(e -> loadCandidates());
+        bAll.addActionListener(e -> setAllSelected(true));
+        bNone.addActionListener(e -> setAllSelected(false));
+        model.addTableModelListener(e -> updateSummary());
+        bOk.addActionListener(e -> {
+            if (getSelectedIds().isEmpty()) {
+                JOptionPane.showMessageDialog(this, "Nije odabran nijedan pčelar.");
+                return;
+            }
+            if (getCertificateDate() == null) {
+                JOptionPane.showMessageDialog(this, "Neispravan datum potvrde.");
+                return;
+            }
+            ok = true;
+            setVisible(false);
+        });
+        bCancel.addActionListener(e -> {
+            ok = false;
+            setVisible(false);
+        });
+
+        setContentPane(root);
+        loadCandidates();
+    }
+
+    private void loadCandidates() {
+        model.setRowCount(0);
+        Integer from = (Integer) cbFromYear.getSelectedItem();
+        if (from == null) return;
+        preview = store.rolloverCandidates(from, toYear);
+        for (BeeUser u : preview.rows()) {
+            model.addRow(new Object[]{Boolean.TRUE, u.getId(), u.getFirstName(), u.getLastName(),
+                    u.getBirthPlace(), u.getResidenceCity(), u.getColonies()});
+        }
+        updateSummary();
+    }
+
+    private void setAllSelected(boolean selected) {
+        for (int i = 0; i < model.getRowCount(); i++) model.setValueAt(selected, i, 0);
+    }
+
+    private void updateSummary() {
+        if (preview == null) return;
+        List<String> skipped = new ArrayList<>();
+        if (preview.inTargetYear() > 0) skipped.add(preview.inTargetYear() + " već postoje u godini " + toYear);
+        if (preview.duplicates() > 0) skipped.add(preview.duplicates() + " ponovljena imena u godini " + cbFromYear.getSelectedItem());
+        lblSummary.setText("Odabrano: " + getSelectedIds().size() + " od " + model.getRowCount()
+                + (skipped.isEmpty() ? "" : " (preskočeno: " + String.join(", ", skipped) + ")"));
+    }
+
+    public boolean isOk() { return ok; }
+
+    public int getFromYear() { return (Integer) cbFromYear.getSelectedItem(); }
+
+    public List<String> getSelectedIds() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < model.getRowCount(); i++) {
+            if (Boolean.TRUE.equals(model.getValueAt(i, 0))) ids.add((String) model.getValueAt(i, 1));
+        }
+        return ids;
+    }
+
+    public LocalDate getCertificateDate() {
+        try {
+            return LocalDate.of((Integer) cbCertYear.getSelectedItem(), cbCertMonth.getSelectedIndex() + 1,
+                    (Integer) cbCertDay.getSelectedItem());
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+}
@@ -2,6 +2,7 @@
 package com.pcelica.ui;
 
 import com.pcelica.model.BeeUser;
+import com.pcelica.store.StringDictionary;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -11,7 +12,7 @@ import java.awt.event.MouseEvent;
 import java.time.LocalDate;
 
 public class UserDialog extends JDialog {
-    private final BeeUser user;
+    private BeeUser user;
     private boolean ok = false;
 
     private final JTextField tfFirst = new JTextField(20);
@@ -27,7 +28,7 @@ public class UserDialog extends JDialog {
     private final JComboBox<String> cbCertMonth = new JComboBox<>();
     private final JComboBox<Integer> cbCertYear = new JComboBox<>();
 
-    private static final String[] BOSNIAN_MONTHS = new String[]{
+    static final String[] BOSNIAN_MONTHS = new String[]{
             "januar","februar","mart","april","maj","juni","juli","avgust","septembar","oktobar","novembar","decembar"
     };
 
@@ -228,32 +229,45 @@ public class UserDialog extends JDialog {
         return true;
     }
 
+    /**
+     * Replaces user with a copy holding the entered values; id and numbers are kept.
+     */
     private void saveToUser() {
-        user.setFirstName(formatName(tfFirst.getText().trim()));
-        user.setLastName(formatName(tfLast.getText().trim()));
-        user.setGender((String) cbGender.getSelectedItem());
         int day = (Integer) cbDay.getSelectedItem();
         int month = cbMonth.getSelectedIndex() + 1;
         int year = (Integer) cbYear.getSelectedItem();
+        LocalDate birthDate;
         try {
-            user.setBirthDate(LocalDate.of(year, month, day));
+            birthDate = LocalDate.of(year, month, day);
         } catch (Exception ex) {
-            user.setBirthDate(null);
+            birthDate = null;
         }
-        // <-- promijenjeno: sačuvaj točno kako korisnik unese
-        user.setBirthPlace(tfBirthPlace.getText().trim());
-        user.setResidenceCity(tfResidence.getText().trim());
-        user.setColonies(((Number) spColonies.getValue()).intValue());
 
         // Save certificate date
         int certDay = (Integer) cbCertDay.getSelectedItem();
         int certMonth = cbCertMonth.getSelectedIndex() + 1;
         int certYear = (Integer) cbCertYear.getSelectedItem();
+        LocalDate certificateDate;
         try {
-            user.setCertificateDate(LocalDate.of(certYear, certMonth, certDay));
+            certificateDate = LocalDate.of(certYear, certMonth, certDay);
         } catch (Exception ex) {
-            user.setCertificateDate(null);
+            certificateDate = null;
         }
+
+        user = new BeeUser(
+                user.getId(),
+                formatName(tfFirst.getText().trim()),
+                formatName(tfLast.getText().trim()),
+                StringDictionary.canonical((String) cbGender.getSelectedItem()),
+                birthDate,
+                // <-- promijenjeno: sačuvaj točno kako korisnik unese
+                StringDictionary.canonical(tfBirthPlace.getText().trim()),
+                StringDictionary.canonical(tfResidence.getText().trim()),
+                ((Number) spColonies.getValue()).intValue(),
+                user.getDocNumber(),
+                user.getSeqNumber(),
+                user.getYear(),
+                certificateDate);
     }
 
     private String formatName(String raw) {
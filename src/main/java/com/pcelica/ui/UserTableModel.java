@@ -0,0 +1,90 @@
+package com.pcelica.ui;
+
+import com.pcelica.model.BeeUser;
+import com.pcelica.store.SnapshotReader;
+
+import javax.swing.table.DefaultTableModel;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Model of the main table. Rows of the current data are added as usual; a snapshot year is not
+ * copied in but read from the SnapshotReader when a cell is asked for, so only the rows the table
+ * actually shows get parsed (sorting or searching still reads the whole year).
+ */
+class UserTableModel extends DefaultTableModel {
+    static final String[] COLUMNS = {"ID", "Ime", "Prezime", "Spol", "Datum rođenja", "Mjesto rođenja", "Prebivalište", "Kolonije", "Broj dokumenta", "Datum potvrde"};
+    private static final DateTimeFormatter OUT_DF = DateTimeFormatter.ofPattern("dd.MM.yyyy.");
+
+    // set while a snapshot year is shown
+    private SnapshotReader snapshot;
+    private int snapshotYear;
+
+    UserTableModel() {
+        super(COLUMNS, 0);
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) { return false; }
+
+    void addUserRow(String id, String firstName, String lastName, String gender, LocalDate birthDate,
+                    String birthPlace, String residenceCity, int colonies, String docNumber, LocalDate certificateDate) {
+        addRow(new Object[]{
+                id,
+                firstName,
+                lastName,
+                gender,
+                date(birthDate),
+                birthPlace,
+                residenceCity,
+                colonies,
+                docNumber,
+                date(certificateDate)
+        });
+    }
+
+    /**
+     * Shows one year of a snapshot, read lazily; null goes back to the added rows.
+     */
+    void showSnapshot(SnapshotReader reader, int year) {
+        snapshot = reader;
+        snapshotYear = year;
+        dataVector.clear();
+        fireTableDataChanged();
+    }
+
+    @Override
+    public void setRowCount(int rowCount) {
+        if (snapshot != null) showSnapshot(null, 0);
+        super.setRowCount(rowCount);
+    }
+
+    @Override
+    public int getRowCount() {
+        return snapshot != null ? snapshot.size(snapshotYear) : super.getRowCount();
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (snapshot == null) return super.getValueAt(row, column);
+        BeeUser u = snapshot.get(snapshotYear, row);
+        if (u == null) return column == 0 ? null : "";
+        return switch (column) {
+            case 0 -> u.getId();
+            case 1 -> u.getFirstName();
+            case 2 -> u.getLastName();
+            case 3 -> u.getGender();
+            case 4 -> date(u.getBirthDate());
+            case 5 -> u.getBirthPlace();
+            case 6 -> u.getResidenceCity();
+            case 7 -> u.getColonies();
+            case 8 -> u.getDocNumber();
+            case 9 -> date(u.getCertificateDate());
+            default -> "";
+        };
+    }
+
+    private static String date(LocalDate d) {
+        return d == null ? "" : d.format(OUT_DF);
+    }
+}
@@ -0,0 +1,147 @@
+package com.pcelica.ui;
+
+import com.pcelica.model.BeeUser;
+import com.pcelica.pdf.YearExport;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Progress of a batch PDF export. The export runs on its own pool, so the window stays usable;
+ * at the end the certificates that failed, and the ones missing data, are listed.
+ */
+public class YearExportDialog extends JDialog {
+    private final List<BeeUser> users;
+    private final YearExport export;
+    private final JProgressBar progress = new JProgressBar();
+    private final JLabel lblStatus = new JLabel(" ");
+    private final JTextArea taReport = new JTextArea();
+    private final JButton bCancel = new JButton("Otkaži");
+    private final JButton bClose = new JButton("Zatvori");
+    private final long started = System.nanoTime();
+
+    public YearExportDialog(Window owner, String title, YearExport export) {
+        super(owner, title, ModalityType.MODELESS);
+        this.users = export.users();
+        this.export = export;
+        initUI();
+        setSize(640, 420);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        start();
+    }
+
+    private void initUI() {
+        JPanel root = new JPanel(new BorderLayout(10, 10));
+        root.setBorder(new EmptyBorder(12, 12, 12, 12));
+
+        JPanel top = new JPanel(new BorderLayout(6, 6));
+        top.add(new JLabel((export.isMerged() ? "Fajl: " : "Folder: ") + export.target()), BorderLayout.NORTH);
+        progress.setMaximum(users.size());
+        progress.setStringPainted(true);
+        top.add(progress, BorderLayout.CENTER);
+        top.add(lblStatus, BorderLayout.SOUTH);
+        root.add(top, BorderLayout.NORTH);
+
+        taReport.setEditable(false);
+        taReport.setLineWrap(true);
+        taReport.setWrapStyleWord(true);
+        root.add(new JScrollPane(taReport), BorderLayout.CENTER);
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        bClose.setEnabled(false);
+        buttons.add(bCancel);
+        buttons.add(bClose);
+        root.add(buttons, BorderLayout.SOUTH);
+
+        bCancel.addActionListener(e -> {
+            export.cancel();
+            bCancel.setEnabled(false);
+            lblStatus.setText(export.isMerged() ? "Otkazivanje... (fajl neće biti sačuvan)"
+                    : "Otkazivanje... (završavaju se potvrde koje su već u izradi)");
+        });
+        bClose.addActionListener(e -> dispose());
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                if (bClose.isEnabled()) dispose();
+                else bCancel.doClick();
+            }
+        });
+
+        setContentPane(root);
+    }
+
+    private void start() {
+        new SwingWorker<List<YearExport.Failure>, Integer>() {
+            @Override
+            protected List<YearExport.Failure> doInBackground() throws Exception {
+                return export.run(this::publish);
+            }
+
+            @Override
+            protected void process(List<Integer> chunk) {
+                int done = 0;
+                for (int n : chunk) done = Math.max(done, n);
+                if (done > progress.getValue()) progress.setValue(done);
+                if (export.isCancelled()) return;
+                lblStatus.setText("Urađeno " + done + " od " + users.size()
+                        + (export.isMerged() && done == users.size() ? ", snimanje fajla..." : ""));
+            }
+
+            @Override
+            protected void done() {
+                bCancel.setEnabled(false);
+                bClose.setEnabled(true);
+                try {
+                    showReport(get());
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    lblStatus.setText("Greška pri exportu: " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private void showReport(List<YearExport.Failure> failures) {
+        int written = export.written();
+        String seconds = String.format("%.1f", (System.nanoTime() - started) / 1e9);
+        lblStatus.setText((export.isCancelled() ? "Otkazano. " : "Završeno. ")
+                + "Exportovano " + written + " od " + users.size() + " potvrda za " + seconds + " s"
+                + (failures.isEmpty() ? "." : ", grešaka: " + failures.size() + "."));
+
+        StringBuilder sb = new StringBuilder();
+        if (!failures.isEmpty()) {
+            sb.append("Nije exportovano:\n");
+            for (YearExport.Failure f : failures) {
+                sb.append("• ").append(name(f.user())).append(": ").append(f.message()).append('\n');
+            }
+            sb.append('\n');
+        }
+        StringBuilder missing = new StringBuilder();
+        for (BeeUser u : export.isCancelled() ? List.<BeeUser>of() : users) {
+            String m = missingData(u);
+            if (!m.isEmpty()) missing.append("• ").append(name(u)).append(": nedostaje ").append(m).append('\n');
+        }
+        if (missing.length() > 0) sb.append("Exportovano, ali nedostaju podaci:\n").append(missing);
+        taReport.setText(sb.toString());
+        taReport.setCaretPosition(0);
+    }
+
+    private static String missingData(BeeUser u) {
+        StringBuilder m = new StringBuilder();
+        if (u.getBirthPlace() == null || u.getBirthPlace().trim().isEmpty()) m.append("mjesto rođenja");
+        if (u.getResidenceCity() == null || u.getResidenceCity().trim().isEmpty()) {
+            if (m.length() > 0) m.append(", ");
+            m.append("mjesto prebivališta");
+        }
+        return m.toString();
+    }
+
+    private static String name(BeeUser u) {
+        return u.getLastName() + " " + u.getFirstName() + " (" + u.getDocNumber() + ")";
+    }
+}